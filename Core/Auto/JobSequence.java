@@ -3,7 +3,7 @@ package FTCEngine.Core.Auto;
 import java.util.ArrayList;
 
 import FTCEngine.Core.OpModeBase;
-import FTCEngine.Core.Time;
+import FTCEngine.Core.Scheduler;
 
 public abstract class JobSequence
 {
@@ -47,6 +47,21 @@ public abstract class JobSequence
 		currentJobIndex = 0;
 	}
 
+	/**
+	 * Invoked when the sequence is replaced or the opMode stops before the sequence finished
+	 */
+	public void cancel()
+	{
+		if (jobs == null) return;
+
+		//Only the jobs before the next execute action can have started
+		for (int i = currentJobIndex; i < jobs.size() && jobs.get(i) != executeJobAction; i++)
+		{
+			BehaviorJob<?> job = jobs.get(i);
+			if (job instanceof WaitJob) ((WaitJob)job).cancel();
+		}
+	}
+
 	protected <TBehavior extends AutoBehavior<TJob>, TJob extends Job, TJobIn extends TJob> void execute(TBehavior behavior, TJobIn job)
 	{
 		buffer(behavior, job);
@@ -147,6 +162,14 @@ public abstract class JobSequence
 			startJob();
 		}
 
+		/**
+		 * Makes the job start again the next time it is updated
+		 */
+		protected void restart()
+		{
+			jobStarted = false;
+		}
+
 		/**
 		 * This method will be invoked after the main update method in Behavior if this BehaviorJob is currently executing
 		 * (or if other behavior jobs executing parallel to this job is executing)
@@ -182,25 +205,37 @@ public abstract class JobSequence
 			super(null, null);
 
 			this.second = second;
-			time = opMode.time;
+			scheduler = opMode.scheduler;
 		}
 
 		private final float second;
-		private final Time time;
+		private final Scheduler scheduler;
 
-		float startTime;
+		private Scheduler.Timer timer;
 
 		@Override
 		protected void startJob()
 		{
-			startTime = time.getTime();
+			//A wait of 0 is done right away, like it was before waits used the scheduler
+			timer = second > 0f ? scheduler.schedule(second, null) : null;
 		}
 
 		@Override
 		public boolean updateJob()
 		{
 			checkStartJob();
-			return time.getTime() - startTime >= second;
+			return timer == null || timer.hasFired();
+		}
+
+		/**
+		 * Cancels the timer of the wait, the wait starts over if the sequence is assigned again
+		 */
+		public void cancel()
+		{
+			if (timer != null) timer.cancel();
+
+			timer = null;
+			restart();
 		}
 
 		@Override
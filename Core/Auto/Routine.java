@@ -0,0 +1,287 @@
+package FTCEngine.Core.Auto;
+
+import java.util.ArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+
+import FTCEngine.Core.OpModeBase;
+import FTCEngine.Core.Scheduler;
+
+/**
+ * A JobSequence written as plain sequential code instead of a queue of jobs. The routine method runs on its own thread,
+ * but only while the opMode is inside JobSequence.run: every time the routine waits (execute, wait, await or yieldFrame)
+ * it hands control back to the opMode thread until the next loop. So the routine never runs at the same time as the behaviors
+ * and never spins, while execute, buffer and wait keep the same meaning as in a queued JobSequence.
+ * Assign it with OpModeBase.assignSequence like any other sequence.
+ */
+public abstract class Routine extends JobSequence
+{
+	public Routine(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	/**
+	 * How long cancel waits in milliseconds for the routine to unwind before abandoning its thread
+	 */
+	private static final long CancelTimeout = 250L;
+
+	private volatile Thread thread; //The thread of the current run, an abandoned thread can tell it is no longer this one
+
+	private Semaphore resumeSignal; //Released by the opMode thread to run the routine until its next wait
+	private Semaphore yieldSignal; //Released by the routine thread when it waits or ends
+
+	private boolean finished;
+	private Throwable error;
+
+	private Scheduler.Timer waitTimer; //The timer of the wait the routine is in, cancelled with the routine
+
+	//The buffered jobs that have not been waited for yet
+	private final ArrayList<AutoBehavior<?>> pendingBehaviors = new ArrayList<>();
+	private final ArrayList<Job> pendingJobs = new ArrayList<>();
+
+	/**
+	 * The sequential code of this routine, it starts in the first loop after the routine is assigned.
+	 * It should only interact with the behaviors through jobs or between waits, and should not catch Error
+	 * since the routine is cancelled by throwing one from the wait it is in. A routine that swallows it anyway
+	 * is abandoned once CancelTimeout passes, and the next wait it makes blocks its thread forever
+	 */
+	protected abstract void routine();
+
+	@Override
+	protected final void queueJobs()
+	{
+		//Routines do not queue jobs, they are started while the routine runs
+	}
+
+	@Override
+	public void reset()
+	{
+		super.reset();
+		cancel();
+
+		resumeSignal = new Semaphore(0);
+		yieldSignal = new Semaphore(0);
+
+		finished = false;
+		error = null;
+	}
+
+	/**
+	 * Runs the routine until it waits for the next frame or ends
+	 */
+	@Override
+	public boolean run()
+	{
+		if (finished) return true;
+
+		if (thread == null)
+		{
+			thread = new RoutineThread(this);
+			thread.start();
+		}
+
+		resumeSignal.release();
+		yieldSignal.acquireUninterruptibly();
+
+		if (error instanceof RuntimeException) throw (RuntimeException)error;
+		if (error instanceof Error) throw (Error)error;
+		if (error != null) throw new RuntimeException(error);
+
+		return finished;
+	}
+
+	/**
+	 * Stops the routine from where it is waiting, invoked when the routine is replaced or the opMode stops
+	 */
+	@Override
+	public void cancel()
+	{
+		super.cancel();
+
+		Thread cancelled = thread;
+		if (cancelled == null) return;
+
+		thread = null;
+		cancelled.interrupt();
+
+		if (waitTimer != null)
+		{
+			waitTimer.cancel();
+			waitTimer = null;
+		}
+
+		try
+		{
+			cancelled.join(CancelTimeout); //Abandoned if it does not stop, it is a daemon and cannot run the routine anymore
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		clearPending();
+	}
+
+	/**
+	 * Waits until the next loop
+	 */
+	protected void yieldFrame()
+	{
+		Thread current = Thread.currentThread();
+
+		if (current != thread)
+		{
+			if (!(current instanceof RoutineThread) || ((RoutineThread)current).routine != this) throw new IllegalStateException("A routine can only wait inside of its routine method!");
+
+			//The routine was cancelled but caught the Cancellation, park the abandoned thread for good instead of letting it run or spin
+			while (true) LockSupport.park(this);
+		}
+
+		yieldSignal.release();
+
+		try
+		{
+			resumeSignal.acquire();
+		}
+		catch (InterruptedException exception)
+		{
+			throw new Cancellation();
+		}
+	}
+
+	/**
+	 * Starts job on behavior and waits until it is done, along with any jobs buffered before it
+	 */
+	@Override
+	protected <TBehavior extends AutoBehavior<TJob>, TJob extends Job, TJobIn extends TJob> void execute(TBehavior behavior, TJobIn job)
+	{
+		buffer(behavior, job);
+		execute();
+	}
+
+	/**
+	 * Starts job on behavior without waiting for it, the next execute waits for all of the buffered jobs
+	 */
+	@Override
+	protected <TBehavior extends AutoBehavior<TJob>, TJob extends Job, TJobIn extends TJob> void buffer(TBehavior behavior, TJobIn job)
+	{
+		for (int i = 0; i < pendingBehaviors.size(); i++)
+		{
+			if (pendingBehaviors.get(i) == behavior) throw new IllegalArgumentException("Cannot buffer two concurrent jobs to the same behavior!");
+		}
+
+		behavior.setCurrentJob(job);
+		behavior.onJobAdded();
+
+		pendingBehaviors.add(behavior);
+		pendingJobs.add(job);
+	}
+
+	/**
+	 * Waits until all of the buffered jobs are done
+	 */
+	@Override
+	protected void execute()
+	{
+		while (!arePendingDone()) yieldFrame();
+		clearPending();
+	}
+
+	/**
+	 * Waits for second seconds, a wait of 0 returns right away without waiting for the next loop
+	 */
+	@Override
+	protected void wait(float second)
+	{
+		if (second <= 0f) return;
+
+		Scheduler.Timer timer = waitTimer = opMode.scheduler.schedule(second, null);
+		while (!timer.hasFired()) yieldFrame();
+
+		waitTimer = null;
+	}
+
+	/**
+	 * Waits until job is done, for jobs that are not run by an AutoBehavior
+	 */
+	protected void await(Job job)
+	{
+		while (!job.getIsDone()) yieldFrame();
+	}
+
+	private boolean arePendingDone()
+	{
+		for (int i = 0; i < pendingBehaviors.size(); i++)
+		{
+			Job job = pendingJobs.get(i);
+
+			//A behavior that dropped its job is also done, same as in JobSequence
+			if (!job.getIsDone() && pendingBehaviors.get(i).getCurrentJob() == job) return false;
+		}
+
+		return true;
+	}
+
+	private void clearPending()
+	{
+		for (int i = 0; i < pendingBehaviors.size(); i++)
+		{
+			AutoBehavior<?> behavior = pendingBehaviors.get(i);
+			if (behavior.getCurrentJob() == pendingJobs.get(i)) behavior.setCurrentJob(null);
+		}
+
+		pendingBehaviors.clear();
+		pendingJobs.clear();
+	}
+
+	/**
+	 * Thrown inside of the routine from the wait it is in when it is cancelled
+	 */
+	private static class Cancellation extends Error
+	{
+		private static final long serialVersionUID = 1L;
+
+		public Cancellation()
+		{
+			super("Routine cancelled", null, false, false);
+		}
+	}
+
+	private static class RoutineThread extends Thread
+	{
+		public RoutineThread(Routine routine)
+		{
+			super("Routine-" + routine.getClass().getSimpleName());
+			setDaemon(true);
+
+			this.routine = routine;
+		}
+
+		private final Routine routine;
+
+		@Override
+		public void run()
+		{
+			try
+			{
+				routine.resumeSignal.acquire();
+				routine.routine();
+			}
+			catch (InterruptedException | Cancellation exception)
+			{
+				return; //Cancelled, the opMode thread is not waiting for the routine
+			}
+			catch (Throwable throwable)
+			{
+				if (routine.thread == this) routine.error = throwable;
+			}
+
+			//An abandoned routine that returned after it was cancelled must not touch the state of the next run
+			if (routine.thread != this) return;
+
+			routine.finished = true;
+			routine.yieldSignal.release();
+		}
+	}
+}
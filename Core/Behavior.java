@@ -2,6 +2,8 @@ package FTCEngine.Core;
 
 import com.qualcomm.robotcore.hardware.HardwareMap;
 
+import java.util.List;
+
 /**
  * A basic class classifying and controlling different mechanism/part of the robot
  */
@@ -17,6 +19,31 @@ public abstract class Behavior
 
 	protected final OpModeBase opMode;
 
+	/**
+	 * This method will be invoked once during init to get the behaviors this behavior reads from in update.
+	 * When the opMode updates in parallel, this behavior will only update after all of its dependencies have updated,
+	 * while behaviors that do not depend on each other might update at the same time on different threads.
+	 */
+	public void addDependencies(List<Class<? extends Behavior>> dependencies)
+	{
+	}
+
+	/**
+	 * This method will be invoked once during init to get the behaviors this behavior should be invoked before,
+	 * for example a sensor behavior should update before the behaviors using its data so they do not lag a frame behind.
+	 */
+	public void addUpdateBefore(List<Class<? extends Behavior>> behaviors)
+	{
+	}
+
+	/**
+	 * This method will be invoked once during init to get the behaviors this behavior should be invoked after.
+	 * NOTE: The behaviors added in addDependencies are always invoked before this behavior too
+	 */
+	public void addUpdateAfter(List<Class<? extends Behavior>> behaviors)
+	{
+	}
+
 	/**
 	 * This method will get invoked one time between the init button and the play button
 	 * Should mostly be used to INITIALIZE the electronics
@@ -54,4 +81,118 @@ public abstract class Behavior
 	public void stop()
 	{
 	}
-}
+
+	/**
+	 * The maximum number of times a fixed timestep behavior can update in one frame to catch up.
+	 * Any time beyond that is dropped so one long frame does not snowball into more long frames.
+	 */
+	public static final int MaxFixedUpdatesPerFrame = 5;
+
+	private float accumulatedTime;
+	private float updateDeltaTime;
+	private int skippedFrames;
+
+	/**
+	 * Returns how many times per second update should be invoked, or 0 to update every frame.
+	 * Can be overridden
+	 */
+	protected float getUpdateRate()
+	{
+		return 0f;
+	}
+
+	/**
+	 * If true, update will be invoked as many times as needed each frame to keep up with getUpdateRate,
+	 * and getDeltaTime will always be exactly one over getUpdateRate. Has no effect if getUpdateRate is 0.
+	 * Can be overridden
+	 */
+	protected boolean useFixedTimestep()
+	{
+		return false;
+	}
+
+	/**
+	 * If true, the Watchdog is allowed to update this behavior less often (or not at all) when the loop keeps going over budget.
+	 * Should never be true for drivetrain or safety-critical behaviors.
+	 * Can be overridden
+	 */
+	protected boolean isLowPriority()
+	{
+		return false;
+	}
+
+	/**
+	 * @return the delta time in seconds between the previous invocation of update and the current one.
+	 * Use this instead of Time.getDeltaTime for behaviors that do not update every frame
+	 */
+	public final float getDeltaTime()
+	{
+		return updateDeltaTime;
+	}
+
+	/**
+	 * Invoked by OpModeBase once each loop before the update.
+	 * Advances the internal timers and returns how many times update should be invoked this frame.
+	 *
+	 * @param degradation The degradation level of the Watchdog, only affects low priority behaviors
+	 */
+	int scheduleUpdates(float frameDeltaTime, int degradation)
+	{
+		float rate = getUpdateRate();
+		boolean fixed = rate > 0f && useFixedTimestep();
+
+		int slowdown = degradation > 0 && isLowPriority() ? 1 << degradation : 1;
+
+		if (slowdown > 1 && (degradation >= Watchdog.MaxDegradation || ++skippedFrames < slowdown))
+		{
+			//Fixed timestep behaviors drop the skipped time instead so their delta time stays the same
+			if (!fixed) accumulatedTime += frameDeltaTime;
+			return 0;
+		}
+
+		skippedFrames = 0;
+		accumulatedTime += frameDeltaTime;
+
+		if (rate <= 0f)
+		{
+			updateDeltaTime = accumulatedTime;
+			accumulatedTime = 0f;
+
+			return 1;
+		}
+
+		float period = 1f / rate;
+
+		if (fixed)
+		{
+			int count = (int)(accumulatedTime / period);
+
+			if (count > MaxFixedUpdatesPerFrame)
+			{
+				count = MaxFixedUpdatesPerFrame;
+				accumulatedTime = 0f;
+			}
+			else accumulatedTime -= count * period;
+
+			updateDeltaTime = period;
+			return count;
+		}
+
+		if (accumulatedTime < period * slowdown) return 0;
+
+		updateDeltaTime = accumulatedTime;
+		accumulatedTime = 0f;
+
+		return 1;
+	}
+
+	/**
+	 * Invoked by OpModeBase on start so the first frame does not update with time accumulated before start
+	 */
+	void resetSchedule()
+	{
+		accumulatedTime = 0f;
+		updateDeltaTime = 0f;
+		skippedFrames = 0;
+	}
+}
\ No newline at end of file
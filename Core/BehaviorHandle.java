@@ -0,0 +1,36 @@
+package FTCEngine.Core;
+
+/**
+ * A typed reference to a behavior in an opMode, returned by OpModeBase.getBehaviorHandle.
+ * Since behaviors never change after init, a handle can be cached and used every frame without any lookup.
+ */
+public final class BehaviorHandle<T extends Behavior>
+{
+	BehaviorHandle(T behavior, int index)
+	{
+		this.behavior = behavior;
+		this.index = index;
+	}
+
+	private final T behavior;
+	private final int index;
+
+	public T get()
+	{
+		return behavior;
+	}
+
+	/**
+	 * Returns the index of the behavior in the order the behaviors are invoked
+	 */
+	public int getIndex()
+	{
+		return index;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Handle to " + behavior.getClass().getSimpleName();
+	}
+}
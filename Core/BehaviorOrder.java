@@ -0,0 +1,175 @@
+package FTCEngine.Core;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Computes the order the behaviors are invoked in from the constraints they declare
+ * (Behavior.addUpdateBefore, Behavior.addUpdateAfter and Behavior.addDependencies).
+ * Behaviors without constraints between them keep the order they were added in.
+ * The constraints are collected once, and kept transitively closed so the ParallelUpdater can order any subset of the behaviors.
+ * This class should only be used by OpModeBase
+ */
+class BehaviorOrder
+{
+	/**
+	 * Sorts the behaviors so that every behavior comes after everything it should update after.
+	 * Throws if a constraint refers to a behavior that is not in the opMode, or if the constraints form a cycle.
+	 */
+	public BehaviorOrder(List<Behavior> behaviors)
+	{
+		int count = behaviors.size();
+
+		IdentityHashMap<Class<?>, Integer> indices = new IdentityHashMap<>(count);
+		for (int i = 0; i < count; i++) indices.put(behaviors.get(i).getClass(), i);
+
+		boolean[][] after = new boolean[count][count]; //after[i][j] means i has to come after j
+		List<Class<? extends Behavior>> classes = new ArrayList<>();
+
+		for (int i = 0; i < count; i++)
+		{
+			Behavior behavior = behaviors.get(i);
+
+			classes.clear();
+			behavior.addUpdateAfter(classes);
+			behavior.addDependencies(classes);
+
+			for (int j = 0; j < classes.size(); j++) after[i][getIndex(indices, behavior, classes.get(j))] = true;
+
+			classes.clear();
+			behavior.addUpdateBefore(classes);
+
+			for (int j = 0; j < classes.size(); j++) after[getIndex(indices, behavior, classes.get(j))][i] = true;
+		}
+
+		int[] remaining = new int[count]; //The number of behaviors each behavior is still waiting for
+		boolean[] placed = new boolean[count];
+
+		for (int i = 0; i < count; i++)
+		{
+			for (int j = 0; j < count; j++)
+			{
+				if (i == j && after[i][j]) throw new IllegalArgumentException(behaviors.get(i).getClass() + " cannot update before or after itself!");
+				if (after[i][j]) remaining[i]++;
+			}
+		}
+
+		Behavior[] result = new Behavior[count];
+		int[] order = new int[count]; //The index in behaviors of each sorted behavior
+
+		for (int placedCount = 0; placedCount < count; placedCount++)
+		{
+			//Always place the earliest added behavior that is ready, so the order is stable
+			int next = -1;
+
+			for (int i = 0; i < count; i++)
+			{
+				if (placed[i] || remaining[i] > 0) continue;
+
+				next = i;
+				break;
+			}
+
+			if (next < 0) throw new IllegalArgumentException("Circular behavior order involving " + getCycleMember(behaviors, placed).getClass());
+
+			placed[next] = true;
+			result[placedCount] = behaviors.get(next);
+			order[placedCount] = next;
+
+			for (int i = 0; i < count; i++)
+			{
+				if (after[i][next]) remaining[i]--;
+			}
+		}
+
+		sorted = result;
+		sortedIndices = new IdentityHashMap<>(count);
+		closure = new boolean[count][];
+
+		//Everything a behavior comes after is sorted before it, so the closure of those is already complete
+		for (int i = 0; i < count; i++)
+		{
+			boolean[] current = closure[i] = new boolean[i];
+			sortedIndices.put(result[i], i);
+
+			for (int j = 0; j < i; j++)
+			{
+				if (!after[order[i]][order[j]]) continue;
+
+				current[j] = true;
+				for (int k = 0; k < j; k++) current[k] |= closure[j][k];
+			}
+		}
+	}
+
+	private final Behavior[] sorted;
+	private final IdentityHashMap<Behavior, Integer> sortedIndices;
+	private final boolean[][] closure; //closure[i][j] means sorted behavior i comes after sorted behavior j, directly or through others
+
+	/**
+	 * Returns the behaviors in the order they should be invoked in
+	 */
+	public Behavior[] getSorted()
+	{
+		return sorted;
+	}
+
+	/**
+	 * Returns whether behavior has to update after other, either directly or through behaviors between them
+	 * (which can be behaviors that do not update at all)
+	 */
+	public boolean isAfter(Behavior behavior, Behavior other)
+	{
+		int index = sortedIndices.get(behavior);
+		int otherIndex = sortedIndices.get(other);
+
+		return otherIndex < index && closure[index][otherIndex];
+	}
+
+	private static int getIndex(IdentityHashMap<Class<?>, Integer> indices, Behavior behavior, Class<?> other)
+	{
+		Integer index = indices.get(other);
+		if (index == null) throw new IllegalArgumentException(behavior.getClass() + " is ordered with " + other + " which is not added to the opMode!");
+
+		return index;
+	}
+
+	private static Behavior getCycleMember(List<Behavior> behaviors, boolean[] placed)
+	{
+		for (int i = 0; i < placed.length; i++)
+		{
+			if (!placed[i]) return behaviors.get(i);
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns the behaviors in order that override the method with name and parameterTypes,
+	 * so the phases can skip behaviors that do nothing in them
+	 */
+	public static Behavior[] filter(Behavior[] behaviors, String name, Class<?>... parameterTypes)
+	{
+		ArrayList<Behavior> result = new ArrayList<>(behaviors.length);
+
+		for (Behavior behavior : behaviors)
+		{
+			if (overrides(behavior, name, parameterTypes)) result.add(behavior);
+		}
+
+		return result.toArray(new Behavior[result.size()]);
+	}
+
+	private static boolean overrides(Behavior behavior, String name, Class<?>... parameterTypes)
+	{
+		try
+		{
+			return behavior.getClass().getMethod(name, parameterTypes).getDeclaringClass() != Behavior.class;
+		}
+		catch (NoSuchMethodException exception)
+		{
+			throw new InternalError("Internal engine error! Behavior has no method " + name);
+		}
+	}
+}
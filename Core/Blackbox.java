@@ -0,0 +1,228 @@
+package FTCEngine.Core;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+
+/**
+ * Records numeric values (motor powers, encoder positions, headings, job indices, etc.) every loop into a fixed-size ring,
+ * so the last frames of the opMode are always available at full loop rate, far denser than what the telemetry shows.
+ * The ring is a primitive array allocated after init, so recording a frame is only a copy of the current values.
+ * It can be dumped to a file on demand, or automatically after stop with setStopDump.
+ */
+public class Blackbox extends OpModeBase.Helper
+{
+	public Blackbox(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	private static final int Magic = 0x46544342; //"FTCB"
+	private static final short Version = 1;
+
+	private final ArrayList<Channel> channels = new ArrayList<>();
+	private int capacity = 8192;
+
+	private File stopDump;
+
+	private Channel[] channelArray; //The channels in an array after init, so recording a frame does not go through the list
+	private double[] rows; //The ring of recorded frames, one row of values per frame
+	private long[] times; //The time of each recorded frame in nanoseconds since start
+
+	private long frameCount; //The total number of frames recorded, the next frame goes to row frameCount % capacity
+	private long startTime;
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Sets the number of frames kept, default is 8192 (over a minute at 100 frames per second). Should be invoked in awake
+	 */
+	public void setCapacity(int frames)
+	{
+		if (opMode.getPhase() != OpModePhase.INITIALIZE) throw new IllegalStateException("The capacity can only be changed during initialization! Phase: " + opMode.getPhase());
+		if (frames <= 0) throw new IllegalArgumentException("frames must be a positive number!");
+
+		capacity = frames;
+	}
+
+	public File getStopDump()
+	{
+		return stopDump;
+	}
+
+	/**
+	 * Sets the file the recorded frames are dumped to after stop, or null (default) to not dump them.
+	 * Files ending with .csv are written as CSV, everything else in the binary format of dump
+	 */
+	public void setStopDump(File file)
+	{
+		stopDump = file;
+	}
+
+	/**
+	 * Creates a channel recorded every frame with the value last set, should be invoked in awake
+	 */
+	public Channel register(String name)
+	{
+		if (opMode.getPhase() != OpModePhase.INITIALIZE) throw new IllegalStateException("Channels can only be registered during initialization! Phase: " + opMode.getPhase());
+		if (name == null) throw new IllegalArgumentException("name cannot be null!");
+
+		Channel channel = new Channel(name);
+		channels.add(channel);
+
+		return channel;
+	}
+
+	/**
+	 * Returns the number of frames that can currently be dumped
+	 */
+	public int getFrameCount()
+	{
+		return (int)Math.min(frameCount, capacity);
+	}
+
+	/**
+	 * Writes the recorded frames to file, oldest first. Files ending with .csv are written as CSV (a time column in seconds
+	 * then a column per channel), everything else as binary: a header (magic, version, channel count and names),
+	 * the frame count, then each frame as its time in nanoseconds followed by the value of each channel as doubles.
+	 * NOTE: This blocks the caller while the file is written, so it should not be invoked every frame
+	 */
+	public void dump(File file)
+	{
+		try
+		{
+			if (file.getName().endsWith(".csv")) dumpCsv(file);
+			else dumpBinary(file);
+		}
+		catch (IOException exception)
+		{
+			throw new IllegalStateException("Cannot dump the blackbox to " + file, exception);
+		}
+	}
+
+	private void dumpCsv(File file) throws IOException
+	{
+		try (PrintWriter writer = new PrintWriter(new BufferedOutputStream(new FileOutputStream(file))))
+		{
+			writer.print("time");
+			for (int i = 0; i < channels.size(); i++) writer.print(',' + channels.get(i).name);
+
+			writer.println();
+			int count = getFrameCount();
+
+			for (int i = 0; i < count; i++)
+			{
+				int row = getRow(i);
+				writer.print(times[row] / 1E9);
+
+				for (int j = 0; j < channels.size(); j++)
+				{
+					writer.print(',');
+					writer.print(rows[row * channels.size() + j]);
+				}
+
+				writer.println();
+			}
+		}
+	}
+
+	private void dumpBinary(File file) throws IOException
+	{
+		try (DataOutputStream stream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+		{
+			stream.writeInt(Magic);
+			stream.writeShort(Version);
+
+			stream.writeInt(channels.size());
+			for (int i = 0; i < channels.size(); i++) stream.writeUTF(channels.get(i).name);
+
+			int count = getFrameCount();
+			stream.writeInt(count);
+
+			for (int i = 0; i < count; i++)
+			{
+				int row = getRow(i);
+				stream.writeLong(times[row]);
+
+				for (int j = 0; j < channels.size(); j++) stream.writeDouble(rows[row * channels.size() + j]);
+			}
+		}
+	}
+
+	/**
+	 * Returns the row of the frame at index, where 0 is the oldest frame kept
+	 */
+	private int getRow(int index)
+	{
+		return (int)((frameCount - getFrameCount() + index) % capacity);
+	}
+
+	@Override
+	public void afterInit()
+	{
+		super.afterInit();
+
+		channelArray = channels.toArray(new Channel[channels.size()]);
+		rows = new double[capacity * channels.size()];
+		times = new long[capacity];
+
+		frameCount = 0L;
+	}
+
+	@Override
+	public void beforeStart()
+	{
+		super.beforeStart();
+		startTime = opMode.time.getClock().nanoTime();
+	}
+
+	@Override
+	public void afterUpdate()
+	{
+		super.afterUpdate();
+
+		int row = (int)(frameCount++ % capacity);
+		int offset = row * channelArray.length;
+
+		times[row] = opMode.time.getClock().nanoTime() - startTime;
+		for (int i = 0; i < channelArray.length; i++) rows[offset + i] = channelArray[i].value;
+	}
+
+	@Override
+	public void afterStop()
+	{
+		super.afterStop();
+		if (stopDump != null) dump(stopDump);
+	}
+
+	/**
+	 * A named value recorded every frame. The value is kept until it is set again
+	 */
+	public static final class Channel
+	{
+		private Channel(String name)
+		{
+			this.name = name;
+		}
+
+		public final String name;
+		private double value;
+
+		public void set(double value)
+		{
+			this.value = value;
+		}
+
+		public double get()
+		{
+			return value;
+		}
+	}
+}
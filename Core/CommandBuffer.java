@@ -0,0 +1,198 @@
+package FTCEngine.Core;
+
+import com.qualcomm.robotcore.hardware.DcMotorSimple;
+import com.qualcomm.robotcore.hardware.Servo;
+
+import java.util.ArrayList;
+
+/**
+ * Buffers hardware writes (motor powers, servo positions, etc.) made by behaviors and sends them all at once
+ * after the behaviors finished updating. Writes within epsilon of the value last sent to the device are dropped,
+ * so each device costs at most one bus transaction per frame, and none if its value did not change.
+ */
+public class CommandBuffer extends OpModeBase.Helper
+{
+	public CommandBuffer(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	private final ArrayList<Channel> channels = new ArrayList<>();
+	private double epsilon = 0.001d;
+
+	public double getEpsilon()
+	{
+		return epsilon;
+	}
+
+	/**
+	 * Sets the amount a value has to change from the value last sent for it to be sent again, default is 0.001
+	 */
+	public void setEpsilon(double epsilon)
+	{
+		if (epsilon < 0d) throw new IllegalArgumentException("epsilon cannot be negative!");
+		this.epsilon = epsilon;
+	}
+
+	/**
+	 * Creates a channel which writes the power of motor, should be invoked in awake
+	 */
+	public Channel register(final DcMotorSimple motor)
+	{
+		return register(new Output()
+		{
+			@Override
+			public void write(double value)
+			{
+				motor.setPower(value);
+			}
+		});
+	}
+
+	/**
+	 * Creates a channel which writes the position of servo, should be invoked in awake
+	 */
+	public Channel register(final Servo servo)
+	{
+		return register(new Output()
+		{
+			@Override
+			public void write(double value)
+			{
+				servo.setPosition(value);
+			}
+		});
+	}
+
+	/**
+	 * Creates a channel which writes to output, should be invoked in awake
+	 */
+	public Channel register(Output output)
+	{
+		if (opMode.getPhase() != OpModePhase.INITIALIZE) throw new IllegalStateException("Channels can only be registered during initialization! Phase: " + opMode.getPhase());
+
+		Channel channel = new Channel(output);
+		channels.add(channel);
+
+		return channel;
+	}
+
+	/**
+	 * Sends every pending value that is different from the value last sent to its device
+	 */
+	public void flush()
+	{
+		for (int i = 0; i < channels.size(); i++) channels.get(i).flush(epsilon);
+	}
+
+	/**
+	 * Makes every channel forget the value last sent to its device,
+	 * so the next flush will send the latest value regardless of whether it changed
+	 */
+	public void invalidate()
+	{
+		for (int i = 0; i < channels.size(); i++) channels.get(i).sent = false;
+	}
+
+	@Override
+	public void afterInit()
+	{
+		super.afterInit();
+		flush();
+	}
+
+	@Override
+	public void afterInitLoop()
+	{
+		super.afterInitLoop();
+		flush();
+	}
+
+	@Override
+	public void afterStart()
+	{
+		super.afterStart();
+		flush();
+	}
+
+	@Override
+	public void afterUpdate()
+	{
+		super.afterUpdate();
+		flush();
+	}
+
+	@Override
+	public void afterStop()
+	{
+		super.afterStop();
+		flush();
+	}
+
+	/**
+	 * Something that a channel can send values to. Can be implemented to write to any device or to a fake one.
+	 */
+	public interface Output
+	{
+		void write(double value);
+	}
+
+	/**
+	 * A buffered value for a single device. Behaviors should set the value during update instead of writing to the device.
+	 */
+	public static final class Channel
+	{
+		private Channel(Output output)
+		{
+			this.output = output;
+		}
+
+		private final Output output;
+
+		private double value;
+		private boolean pending;
+
+		private double sentValue;
+		private boolean sent;
+
+		/**
+		 * Sets the value that will be sent to the device on the next flush.
+		 * Only the last value set in a frame is sent
+		 */
+		public void set(double value)
+		{
+			this.value = value;
+			pending = true;
+		}
+
+		/**
+		 * Returns the latest value set (which might not be sent yet)
+		 */
+		public double get()
+		{
+			return value;
+		}
+
+		/**
+		 * Returns the value last sent to the device
+		 */
+		public double getSent()
+		{
+			return sentValue;
+		}
+
+		private void flush(double epsilon)
+		{
+			if (!pending) return;
+			pending = false;
+
+			//Zero is always sent exactly so that a device can never be left slightly on
+			if (sent && (value == sentValue || (value != 0d && Math.abs(value - sentValue) <= epsilon))) return;
+
+			output.write(value);
+
+			sentValue = value;
+			sent = true;
+		}
+	}
+}
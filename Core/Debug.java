@@ -1,19 +1,424 @@
 package FTCEngine.Core;
 
+import org.firstinspires.ftc.robotcore.external.Telemetry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the data shown on the driver station. Values are stored in slots keyed by their caption,
+ * and only the captions whose values changed are sent to the output; captions no longer added are removed.
+ * By default the data is sent at the end of every phase on the OpMode thread; with setUpdateRate it is instead
+ * formatted and sent on a background thread at a fixed rate, so telemetry does not compete with the control code.
+ */
 public class Debug extends OpModeBase.Helper
 {
 	public Debug(OpModeBase opMode)
 	{
 		super(opMode);
+		output = new TelemetryOutput(opMode);
+	}
+
+	private static final byte KindObject = 0;
+	private static final byte KindDouble = 1;
+	private static final byte KindLong = 2;
+	private static final byte KindFloat = 3;
+
+	private Output output;
+	private final Object sendLock = new Object();
+
+	private final HashMap<String, Slot> slotMap = new HashMap<>();
+	private final ArrayList<Slot> slots = new ArrayList<>();
+
+	//Reused by send so that collecting the changes does not allocate
+	private Slot[] sendSlots = new Slot[16];
+	private Object[] sendValues = new Object[16];
+	private double[] sendNumbers = new double[16];
+	private byte[] sendKinds = new byte[16];
+	private boolean[] sendRemoves = new boolean[16];
+
+	private float updateRate;
+	private SendThread sendThread;
+
+	public Output getOutput()
+	{
+		return output;
+	}
+
+	/**
+	 * Replaces where the data is sent to, by default it is the telemetry of the opMode.
+	 * Used to run the opMode outside of the FTC app, where there is no telemetry.
+	 */
+	public void setOutput(Output output)
+	{
+		if (output == null) throw new IllegalArgumentException("output cannot be null!");
+
+		synchronized (sendLock)
+		{
+			this.output = output;
+			for (int i = 0; i < slots.size(); i++) slots.get(i).sent = false; //Send everything again to the new output
+		}
+	}
+
+	public float getUpdateRate()
+	{
+		return updateRate;
+	}
+
+	/**
+	 * Sets how many times per second the data is sent on a background thread,
+	 * or 0 (default) to send it on the OpMode thread at the end of every phase
+	 */
+	public void setUpdateRate(float updateRate)
+	{
+		if (updateRate < 0f) throw new IllegalArgumentException("updateRate cannot be negative!");
+
+		this.updateRate = updateRate;
+		stopSendThread();
+	}
+
+	/**
+	 * NOTE: This method is synchronized so behaviors updating in parallel can safely add data.
+	 * The value might be formatted later on another thread, so it should not be modified after being added
+	 */
+	public synchronized void addData(String caption, Object value)
+	{
+		Slot slot = getSlot(caption);
+
+		slot.value = value;
+		slot.kind = KindObject;
+		slot.set = true;
+	}
+
+	/**
+	 * Adds a number without boxing it, it is only formatted when it is sent
+	 */
+	public synchronized void addData(String caption, double value)
+	{
+		Slot slot = getSlot(caption);
+
+		slot.number = value;
+		slot.kind = KindDouble;
+		slot.set = true;
 	}
 
-	public void addData(String caption, Object value)
+	/**
+	 * Adds a number without boxing it, it is only formatted when it is sent
+	 */
+	public synchronized void addData(String caption, float value)
 	{
-		opMode.telemetry.addData(caption, value);
+		Slot slot = getSlot(caption);
+
+		slot.number = value;
+		slot.kind = KindFloat;
+		slot.set = true;
+	}
+
+	/**
+	 * Adds a number without boxing it, it is only formatted when it is sent
+	 */
+	public synchronized void addData(String caption, long value)
+	{
+		Slot slot = getSlot(caption);
+
+		slot.number = value;
+		slot.kind = KindLong;
+		slot.set = true;
+	}
+
+	public synchronized void addData(String caption)
+	{
+		addData(caption, "");
 	}
 
-	public void addData(String caption)
+	private Slot getSlot(String caption)
 	{
-		opMode.telemetry.addData(caption, "");
+		Slot slot = slotMap.get(caption);
+		if (slot != null) return slot;
+
+		slot = new Slot(caption);
+
+		slotMap.put(caption, slot);
+		slots.add(slot);
+
+		return slot;
+	}
+
+	/**
+	 * Marks the end of a frame, invoked by OpModeBase at the end of every phase.
+	 * Makes the data added during the frame available to be sent, and sends it if there is no update rate
+	 */
+	public void update()
+	{
+		commit();
+
+		if (updateRate <= 0f || opMode.getPhase() == OpModePhase.STOP) send();
+		else if (sendThread == null)
+		{
+			sendThread = new SendThread(this, (long)(1E9 / updateRate));
+			sendThread.start();
+		}
+	}
+
+	private synchronized void commit()
+	{
+		for (int i = 0; i < slots.size(); i++)
+		{
+			Slot slot = slots.get(i);
+			if (!slot.set) continue;
+
+			slot.committedValue = slot.value;
+			slot.committedNumber = slot.number;
+			slot.committedKind = slot.kind;
+
+			slot.set = false;
+			slot.committed = true;
+		}
+	}
+
+	/**
+	 * Sends the changed values to the output and removes the captions not added since the last send
+	 */
+	private void send()
+	{
+		synchronized (sendLock)
+		{
+			int count = collectChanges();
+
+			for (int i = 0; i < count; i++)
+			{
+				Slot slot = sendSlots[i];
+
+				if (sendRemoves[i])
+				{
+					if (slot.sent) output.removeData(slot.caption);
+					continue;
+				}
+
+				output.setData(slot.caption, format(sendValues[i], sendNumbers[i], sendKinds[i]));
+				slot.sent = true;
+			}
+
+			output.update();
+			for (int i = 0; i < count; i++) sendSlots[i] = null;
+		}
+	}
+
+	/**
+	 * Copies the values that changed since the last send into the send buffers, returns how many there are
+	 */
+	private synchronized int collectChanges()
+	{
+		if (sendSlots.length < slots.size()) growSendBuffers(slots.size());
+		int count = 0;
+
+		for (int i = 0; i < slots.size(); i++)
+		{
+			Slot slot = slots.get(i);
+
+			if (!slot.committed)
+			{
+				if (slot.set) continue; //Only added in the current frame, which is not committed yet
+
+				//Not added since the last send
+				slotMap.remove(slot.caption);
+				slots.remove(i--);
+
+				sendSlots[count] = slot;
+				sendRemoves[count++] = true;
+
+				continue;
+			}
+
+			slot.committed = false;
+			if (slot.sent && !slot.hasChanged()) continue;
+
+			sendSlots[count] = slot;
+			sendValues[count] = slot.committedValue;
+			sendNumbers[count] = slot.committedNumber;
+			sendKinds[count] = slot.committedKind;
+			sendRemoves[count++] = false;
+
+			slot.sentKind = slot.committedKind;
+			slot.sentNumber = slot.committedNumber;
+			slot.sentObject = slot.committedValue;
+		}
+
+		return count;
+	}
+
+	private void growSendBuffers(int size)
+	{
+		size = Math.max(size, sendSlots.length * 2);
+
+		sendSlots = new Slot[size];
+		sendValues = new Object[size];
+		sendNumbers = new double[size];
+		sendKinds = new byte[size];
+		sendRemoves = new boolean[size];
+	}
+
+	private static Object format(Object value, double number, byte kind)
+	{
+		switch (kind)
+		{
+			case KindDouble:
+				return String.valueOf(number);
+			case KindLong:
+				return String.valueOf((long)number);
+			case KindFloat:
+				return String.valueOf((float)number);
+		}
+
+		return value;
+	}
+
+	private void stopSendThread()
+	{
+		if (sendThread == null) return;
+
+		sendThread.running = false;
+		sendThread.interrupt();
+
+		sendThread = null;
+	}
+
+	@Override
+	public void afterStop()
+	{
+		super.afterStop();
+		stopSendThread(); //The last frame is sent on the OpMode thread
+	}
+
+	/**
+	 * Somewhere the data can be displayed. The output should keep showing every caption
+	 * until it is removed, since only the captions that changed are sent
+	 */
+	public interface Output
+	{
+		/**
+		 * Adds the caption if it is new, otherwise changes its value
+		 */
+		void setData(String caption, Object value);
+
+		void removeData(String caption);
+
+		/**
+		 * Invoked after all of the changes of a send, the output should display them now
+		 */
+		void update();
+	}
+
+	private static final class Slot
+	{
+		public Slot(String caption)
+		{
+			this.caption = caption;
+		}
+
+		public final String caption;
+
+		//Written during the frame
+		public Object value;
+		public double number;
+		public byte kind;
+		public boolean set;
+
+		//Copied at the end of the frame
+		public Object committedValue;
+		public double committedNumber;
+		public byte committedKind;
+		public boolean committed;
+
+		//Last sent
+		public Object sentObject;
+		public double sentNumber;
+		public byte sentKind;
+		public boolean sent;
+
+		public boolean hasChanged()
+		{
+			if (committedKind != sentKind) return true;
+			if (committedKind != KindObject) return Double.doubleToLongBits(committedNumber) != Double.doubleToLongBits(sentNumber);
+
+			return committedValue == null ? sentObject != null : !committedValue.equals(sentObject);
+		}
+	}
+
+	private static class SendThread extends Thread
+	{
+		public SendThread(Debug debug, long period)
+		{
+			super("Debug-Telemetry");
+			setDaemon(true);
+
+			this.debug = debug;
+			this.period = period;
+		}
+
+		private final Debug debug;
+		private final long period;
+
+		public volatile boolean running = true;
+
+		@Override
+		public void run()
+		{
+			while (running)
+			{
+				long start = System.nanoTime();
+				debug.send();
+
+				long remaining = period - (System.nanoTime() - start);
+				if (remaining <= 0L) continue;
+
+				try
+				{
+					Thread.sleep(remaining / 1000000L, (int)(remaining % 1000000L));
+				}
+				catch (InterruptedException exception)
+				{
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Sends the data to the telemetry of the opMode. The telemetry is left in its default auto clear mode, so lines added
+	 * directly with opMode.telemetry keep working; the displayed values are kept here and added again on every update
+	 */
+	private static class TelemetryOutput implements Output
+	{
+		public TelemetryOutput(OpModeBase opMode)
+		{
+			this.opMode = opMode;
+		}
+
+		private final OpModeBase opMode;
+		private final LinkedHashMap<String, Object> displayed = new LinkedHashMap<>();
+
+		@Override
+		public void setData(String caption, Object value)
+		{
+			displayed.put(caption, value);
+		}
+
+		@Override
+		public void removeData(String caption)
+		{
+			displayed.remove(caption);
+		}
+
+		@Override
+		public void update()
+		{
+			Telemetry telemetry = opMode.telemetry;
+
+			for (Map.Entry<String, Object> entry : displayed.entrySet()) telemetry.addData(entry.getKey(), entry.getValue());
+			telemetry.update();
+		}
 	}
 }
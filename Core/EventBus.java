@@ -0,0 +1,214 @@
+package FTCEngine.Core;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.IdentityHashMap;
+
+/**
+ * Lets behaviors publish events (such as "intake full" or "target acquired") to other behaviors without polling them.
+ * Each event type has its own channel backed by a ring of preallocated event objects, so posting and receiving never allocates:
+ * a poster fills in an event object of its own, and post copies it into the ring.
+ * Events are delivered in the order they were posted, and since behaviors are invoked in a fixed order,
+ * the same inputs always deliver the same events in the same frames.
+ */
+public class EventBus extends OpModeBase.Helper
+{
+	public EventBus(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	public static final int DefaultCapacity = 32;
+
+	private final IdentityHashMap<Class<?>, Channel<?>> channels = new IdentityHashMap<>();
+
+	/**
+	 * Gets the channel of eventType, creating it with DefaultCapacity if needed. Should be invoked in awake
+	 */
+	public <T extends Event<T>> Channel<T> getChannel(Class<T> eventType)
+	{
+		return getChannel(eventType, DefaultCapacity);
+	}
+
+	/**
+	 * Gets the channel of eventType, creating it if needed. Should be invoked in awake.
+	 * eventType must have a public constructor without parameters, which is used to preallocate all of the events.
+	 *
+	 * @param capacity The number of events the channel can hold before the oldest ones are overwritten.
+	 *                 If the channel is requested more than once, the largest capacity is used
+	 */
+	@SuppressWarnings("unchecked") //Channels are keyed by their event type
+	public <T extends Event<T>> Channel<T> getChannel(Class<T> eventType, int capacity)
+	{
+		if (opMode.getPhase() != OpModePhase.INITIALIZE) throw new IllegalStateException("Channels can only be created during initialization! Phase: " + opMode.getPhase());
+		if (capacity <= 0) throw new IllegalArgumentException("capacity must be a positive number!");
+
+		Channel<T> channel = (Channel<T>)channels.get(eventType);
+
+		if (channel == null)
+		{
+			channel = new Channel<>(eventType);
+			channels.put(eventType, channel);
+		}
+
+		channel.capacity = Math.max(channel.capacity, capacity);
+		return channel;
+	}
+
+	/**
+	 * Creates a new subscription which receives every event posted to the channel of eventType from now on
+	 */
+	public <T extends Event<T>> Subscription<T> subscribe(Class<T> eventType)
+	{
+		return getChannel(eventType).subscribe();
+	}
+
+	@Override
+	public void afterInit()
+	{
+		super.afterInit();
+		for (Channel<?> channel : channels.values()) channel.allocate();
+	}
+
+	/**
+	 * Implemented by event types so that post can copy an event into the ring of its channel
+	 */
+	public interface Event<T>
+	{
+		/**
+		 * Sets every field of this event to the value in other
+		 */
+		void copyFrom(T other);
+	}
+
+	/**
+	 * A ring of preallocated events of one type
+	 */
+	public static final class Channel<T extends Event<T>>
+	{
+		private Channel(Class<T> eventType)
+		{
+			this.eventType = eventType;
+		}
+
+		public final Class<T> eventType;
+
+		private int capacity;
+		private T[] events;
+
+		private volatile long head; //The sequence number of the next event posted, only advanced once the event is written
+		private final Object postLock = new Object();
+
+		@SuppressWarnings("unchecked") //The array is created with the component type eventType
+		private void allocate()
+		{
+			events = (T[])Array.newInstance(eventType, capacity);
+
+			try
+			{
+				for (int i = 0; i < capacity; i++) events[i] = eventType.getDeclaredConstructor().newInstance();
+			}
+			catch (NoSuchMethodException | InstantiationException | IllegalAccessException exception)
+			{
+				throw new IllegalArgumentException("Event type " + eventType + " needs a public constructor without parameters!", exception);
+			}
+			catch (InvocationTargetException exception)
+			{
+				throw new IllegalArgumentException("The constructor of event type " + eventType + " threw!", exception.getCause());
+			}
+		}
+
+		/**
+		 * Copies event into the ring and publishes it to the subscribers. The event is not kept,
+		 * so a behavior can reuse one event object for all of its posts. Behaviors updating in parallel can post,
+		 * but then the order is only deterministic between behaviors that depend on each other
+		 */
+		public void post(T event)
+		{
+			if (events == null) throw new IllegalStateException("Cannot post events before initialization finished!");
+			if (event == null) throw new IllegalArgumentException("event cannot be null!");
+
+			synchronized (postLock)
+			{
+				events[(int)(head % events.length)].copyFrom(event);
+				head++; //Not reached if copyFrom throws, so a partly copied event is never published
+			}
+		}
+
+		/**
+		 * Returns the total number of events posted to this channel
+		 */
+		public long getPostedCount()
+		{
+			return head;
+		}
+
+		public int getCapacity()
+		{
+			return capacity;
+		}
+
+		/**
+		 * Creates a new subscription which receives every event posted from now on
+		 */
+		public Subscription<T> subscribe()
+		{
+			return new Subscription<>(this);
+		}
+	}
+
+	/**
+	 * Receives the events of one channel. Should be drained once per frame by invoking poll until it returns null
+	 */
+	public static final class Subscription<T extends Event<T>>
+	{
+		private Subscription(Channel<T> channel)
+		{
+			this.channel = channel;
+			cursor = channel.head;
+		}
+
+		public final Channel<T> channel;
+
+		private long cursor;
+		private long missedCount;
+
+		/**
+		 * Returns the next event, or null if there are no more events posted since the last poll.
+		 * The returned event is only valid until the next poll
+		 */
+		public T poll()
+		{
+			long head = channel.head;
+			if (cursor == head) return null;
+
+			long oldest = head - channel.events.length;
+
+			if (cursor < oldest)
+			{
+				//The channel wrapped around before this subscription read the events
+				missedCount += oldest - cursor;
+				cursor = oldest;
+			}
+
+			return channel.events[(int)(cursor++ % channel.events.length)];
+		}
+
+		/**
+		 * Skips all of the events posted so far
+		 */
+		public void clear()
+		{
+			cursor = channel.head;
+		}
+
+		/**
+		 * Returns the number of events that were overwritten before this subscription read them.
+		 * If this is ever not 0 the capacity of the channel should be increased
+		 */
+		public long getMissedCount()
+		{
+			return missedCount;
+		}
+	}
+}
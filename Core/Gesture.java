@@ -0,0 +1,202 @@
+package FTCEngine.Core;
+
+/**
+ * A pattern of button presses recognized by Input, created with Input.registerChord, registerHold, registerDoubleTap or registerCombo.
+ * Each gesture is a small state machine stepped once per frame after the gamepads are read,
+ * so checking it is only reading a flag and recognizing it costs the same every frame.
+ */
+public abstract class Gesture
+{
+	Gesture(Input.Source source, int mask)
+	{
+		this.source = source;
+		this.mask = mask;
+	}
+
+	public final Input.Source source;
+	final int mask; //The bits of all of the buttons of the gesture, see Input.packButtons
+
+	boolean triggered;
+	boolean active;
+
+	/**
+	 * Returns whether the gesture was completed in this frame
+	 */
+	public boolean isTriggered()
+	{
+		return triggered;
+	}
+
+	/**
+	 * Returns whether the gesture is being held: for chords while all of the buttons are pressed, for holds once the duration passed.
+	 * Otherwise the same as isTriggered
+	 */
+	public boolean isActive()
+	{
+		return active;
+	}
+
+	/**
+	 * Steps the state machine of the gesture
+	 *
+	 * @param pressed The buttons of the source pressed in this frame
+	 * @param down    The buttons of the source pressed in this frame but not in the previous one
+	 * @param time    The time of the frame in nanoseconds
+	 */
+	abstract void update(int pressed, int down, long time);
+
+	/**
+	 * All of the buttons pressed at the same time, triggered when the last one of them is pressed
+	 */
+	static final class Chord extends Gesture
+	{
+		Chord(Input.Source source, int mask)
+		{
+			super(source, mask);
+		}
+
+		@Override
+		void update(int pressed, int down, long time)
+		{
+			boolean held = (pressed & mask) == mask;
+
+			triggered = held && !active;
+			active = held;
+		}
+	}
+
+	/**
+	 * All of the buttons held together for a duration, triggered once when the duration passes
+	 */
+	static final class Hold extends Gesture
+	{
+		Hold(Input.Source source, int mask, long duration)
+		{
+			super(source, mask);
+			this.duration = duration;
+		}
+
+		private final long duration;
+
+		private boolean held;
+		private long startTime;
+
+		@Override
+		void update(int pressed, int down, long time)
+		{
+			triggered = false;
+
+			if ((pressed & mask) != mask)
+			{
+				held = false;
+				active = false;
+
+				return;
+			}
+
+			if (!held)
+			{
+				held = true;
+				startTime = time;
+			}
+
+			if (!active && time - startTime >= duration)
+			{
+				triggered = true;
+				active = true;
+			}
+		}
+	}
+
+	/**
+	 * A button pressed twice, with the second press at most interval after the first
+	 */
+	static final class DoubleTap extends Gesture
+	{
+		DoubleTap(Input.Source source, int mask, long interval)
+		{
+			super(source, mask);
+			this.interval = interval;
+		}
+
+		private final long interval;
+
+		private boolean tapped;
+		private long tapTime;
+
+		@Override
+		void update(int pressed, int down, long time)
+		{
+			triggered = false;
+			active = false;
+
+			if (tapped && time - tapTime > interval) tapped = false;
+			if ((down & mask) == 0) return;
+
+			if (!tapped)
+			{
+				tapped = true;
+				tapTime = time;
+
+				return;
+			}
+
+			tapped = false;
+
+			triggered = true;
+			active = true;
+		}
+	}
+
+	/**
+	 * Buttons pressed one after another in order, each at most interval after the previous one.
+	 * Pressing another button of the combo out of order starts it over
+	 */
+	static final class Combo extends Gesture
+	{
+		Combo(Input.Source source, int[] sequence, long interval)
+		{
+			super(source, combine(sequence));
+
+			this.sequence = sequence;
+			this.interval = interval;
+		}
+
+		private final int[] sequence; //The bit of each button in order
+		private final long interval;
+
+		private int step; //The index of the next button expected
+		private long stepTime;
+
+		private static int combine(int[] sequence)
+		{
+			int mask = 0;
+			for (int bit : sequence) mask |= bit;
+
+			return mask;
+		}
+
+		@Override
+		void update(int pressed, int down, long time)
+		{
+			triggered = false;
+			active = false;
+
+			if (step > 0 && time - stepTime > interval) step = 0;
+
+			down &= mask;
+			if (down == 0) return;
+
+			if (down != sequence[step]) step = 0; //Wrong or several buttons, but they might start the combo again
+			if (down != sequence[step]) return;
+
+			stepTime = time;
+			if (++step < sequence.length) return;
+
+			step = 0;
+
+			triggered = true;
+			active = true;
+		}
+	}
+}
@@ -3,20 +3,64 @@ package FTCEngine.Core;
 import com.qualcomm.robotcore.hardware.Gamepad;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 
-import FTCEngine.Delegates.Func;
-import FTCEngine.Helpers.CollectionHelper;
+import FTCEngine.Math.Mathf;
+import FTCEngine.Math.MutableVector2;
 import FTCEngine.Math.Vector2;
 
+/**
+ * Reads the gamepads once per frame into a snapshot: the buttons of each source are packed into a bitmask
+ * (bit n is the button with ordinal n) along with the mask of the previous frame, and the triggers and sticks are copied into floats.
+ * Every query is then a bit test or an array read, no matter how many buttons are registered.
+ * The sticks can be read without allocating through the primitive accessors or the overloads taking a MutableVector2;
+ * the Vector2 accessors return a cached vector that is only created again when the stick moved.
+ * Each stick can be shaped (deadzones, response curve and slew rate) with getShaping, all of the stick accessors read the shaped values.
+ * Instead of polling, behaviors can also subscribe listeners to buttons, which are invoked only for the buttons that changed.
+ */
 public class Input extends OpModeBase.Helper
 {
 	public Input(OpModeBase opMode)
 	{
 		super(opMode);
+
+		Arrays.fill(downListeners, new ButtonListener[0]);
+		Arrays.fill(upListeners, new ButtonListener[0]);
 	}
 
-	private final ArrayList<ButtonState> registeredButtons = new ArrayList<ButtonState>();
+	//The buttons that have a bit in the masks, triggers and joysticks are read as axes instead
+	private static final int PressableMask = ~(buttonBit(Button.LEFT_TRIGGER) | buttonBit(Button.RIGHT_TRIGGER) | buttonBit(Button.LEFT_JOYSTICK) | buttonBit(Button.RIGHT_JOYSTICK));
+
+	//Indices of the axes of each source in the axes array
+	private static final int LeftStickX = 0;
+	private static final int LeftStickY = 1;
+	private static final int RightStickX = 2;
+	private static final int RightStickY = 3;
+	private static final int LeftTrigger = 4;
+	private static final int RightTrigger = 5;
+	private static final int AxisCount = 6;
+
+	private static final Source[] Sources = Source.values();
+	private static final Button[] Buttons = Button.values();
+
+	private final int[] registeredMasks = new int[Source.length];
+	private final int[] currentMasks = new int[Source.length];
+	private final int[] previousMasks = new int[Source.length];
+	private final float[] axes = new float[Source.length * AxisCount];
+
+	//Cached results of getVector and getDirection for each stick of each source, null when the stick moved
+	private final Vector2[] vectors = new Vector2[Source.length * 2];
+	private final Vector2[] directions = new Vector2[Source.length * 2];
+	private final StickShaping[] shapings = createShapings();
+
+	private final Gamepad[] gamepadOverrides = new Gamepad[Source.length];
+	private final ArrayList<Gesture> gestures = new ArrayList<>();
+
+	//Listeners of each button of each source, indexed by source.ordinal() * Button.length + button.ordinal()
+	private final int[] subscribedMasks = new int[Source.length];
+	private final ButtonListener[][] downListeners = new ButtonListener[Source.length * Button.length][];
+	private final ButtonListener[][] upListeners = new ButtonListener[Source.length * Button.length][];
+	private HoldSubscription[] holdSubscriptions = new HoldSubscription[0];
 
 	/**
 	 * Tell the input that the program is going to use this button
@@ -26,23 +70,151 @@ public class Input extends OpModeBase.Helper
 	public void registerButton(Source source, Button button)
 	{
 		if (opMode.getPhase() != OpModePhase.INITIALIZE && opMode.getPhase() != OpModePhase.START) throw new IllegalStateException("Invalid OpMode state to register button: " + opMode.getPhase());
+		if ((buttonBit(button) & PressableMask) == 0) throw new IllegalArgumentException("The button (" + button + ") cannot be registered.");
+
+		registeredMasks[source.ordinal()] |= buttonBit(button);
+	}
+
+	/**
+	 * Invokes listener in every frame button is pressed down. Listeners are only invoked during loop,
+	 * a button already held when loop begins does not count as pressed. The button is registered,
+	 * so same as registerButton, this can only be invoked during initialization or start
+	 */
+	public void subscribeDown(Source source, Button button, ButtonListener listener)
+	{
+		int index = subscribe(source, button, listener);
+		downListeners[index] = append(downListeners[index], listener);
+	}
+
+	/**
+	 * Invokes listener in every frame button is released, only during loop
+	 */
+	public void subscribeUp(Source source, Button button, ButtonListener listener)
+	{
+		int index = subscribe(source, button, listener);
+		upListeners[index] = append(upListeners[index], listener);
+	}
+
+	/**
+	 * Invokes listener once every time button is held down for seconds, it is a gesture from registerHold with a listener.
+	 * The hold counts from when button is pressed, but the listener is only invoked if it completes during loop
+	 */
+	public void subscribeHold(Source source, Button button, float seconds, ButtonListener listener)
+	{
+		if (listener == null) throw new IllegalArgumentException("listener cannot be null!");
+
+		Gesture gesture = registerHold(source, seconds, button);
+		holdSubscriptions = append(holdSubscriptions, new HoldSubscription(gesture, button, listener));
+	}
+
+	private int subscribe(Source source, Button button, ButtonListener listener)
+	{
+		if (listener == null) throw new IllegalArgumentException("listener cannot be null!");
+
+		registerButton(source, button);
+		subscribedMasks[source.ordinal()] |= buttonBit(button);
+
+		return source.ordinal() * Button.length + button.ordinal();
+	}
+
+	private static <T> T[] append(T[] array, T item)
+	{
+		T[] result = Arrays.copyOf(array, array.length + 1);
+		result[array.length] = item;
+
+		return result;
+	}
+
+	/**
+	 * Registers a gesture triggered when all of buttons are pressed at the same time, for example LEFT_BUMPER + A.
+	 * Same as registerButton, this can only be invoked during initialization or start
+	 */
+	public Gesture registerChord(Source source, Button... buttons)
+	{
+		return addGesture(new Gesture.Chord(source, registerButtons(source, buttons)));
+	}
+
+	/**
+	 * Registers a gesture triggered when all of buttons are held together for seconds
+	 */
+	public Gesture registerHold(Source source, float seconds, Button... buttons)
+	{
+		if (seconds < 0f) throw new IllegalArgumentException("seconds cannot be negative!");
+		return addGesture(new Gesture.Hold(source, registerButtons(source, buttons), toNanos(seconds)));
+	}
+
+	/**
+	 * Registers a gesture triggered when button is pressed twice with at most interval seconds between the presses
+	 */
+	public Gesture registerDoubleTap(Source source, Button button, float interval)
+	{
+		if (interval <= 0f) throw new IllegalArgumentException("interval must be a positive number!");
+		return addGesture(new Gesture.DoubleTap(source, registerButtons(source, button), toNanos(interval)));
+	}
+
+	/**
+	 * Registers a gesture triggered when sequence is pressed in order, with at most interval seconds between each press
+	 */
+	public Gesture registerCombo(Source source, float interval, Button... sequence)
+	{
+		if (interval <= 0f) throw new IllegalArgumentException("interval must be a positive number!");
+		int[] bits = new int[sequence.length];
+
+		registerButtons(source, sequence);
+		for (int i = 0; i < sequence.length; i++) bits[i] = buttonBit(sequence[i]);
+
+		return addGesture(new Gesture.Combo(source, bits, toNanos(interval)));
+	}
+
+	/**
+	 * Registers all of buttons and returns their combined bits
+	 */
+	private int registerButtons(Source source, Button... buttons)
+	{
+		if (buttons.length == 0) throw new IllegalArgumentException("A gesture needs at least one button!");
+		int mask = 0;
+
+		for (Button button : buttons)
+		{
+			registerButton(source, button);
+			mask |= buttonBit(button);
+		}
 
-		int index = CollectionHelper.binarySearch(registeredButtons, PriorityExtractor.instance, PriorityExtractor.getPriority(source, button));
-		if (index >= 0) return; //Button already registered
+		return mask;
+	}
 
-		registeredButtons.add(~index, new ButtonState(source, button));
+	private Gesture addGesture(Gesture gesture)
+	{
+		gestures.add(gesture);
+		return gesture;
 	}
 
-	private ButtonState getButtonState(Source source, Button button)
+	private static long toNanos(float seconds)
 	{
-		int index = CollectionHelper.binarySearch(registeredButtons, PriorityExtractor.instance, PriorityExtractor.getPriority(source, button));
+		return (long)(seconds * 1E9);
+	}
 
-		if (index >= 0) return registeredButtons.get(index);
+	private static int buttonBit(Button button)
+	{
+		return 1 << button.ordinal();
+	}
+
+	/**
+	 * Returns the bit of button, or throws if it is not registered for source
+	 */
+	private int getRegisteredBit(Source source, Button button)
+	{
+		int bit = buttonBit(button);
+
+		if ((registeredMasks[source.ordinal()] & bit) != 0) return bit;
 		throw new IllegalArgumentException("No registered button with " + source + " and " + button);
 	}
 
 	public Gamepad getGamepad(Source source)
 	{
+		Gamepad gamepad = gamepadOverrides[source.ordinal()];
+		if (gamepad != null) return gamepad;
+
 		switch (source)
 		{
 			case CONTROLLER_1:
@@ -54,68 +226,184 @@ public class Input extends OpModeBase.Helper
 		throw new IllegalArgumentException("Source (" + source + ") is an illegal source for gamepad");
 	}
 
+	/**
+	 * Makes the input read source from gamepad instead of the gamepad of the opMode, or null to read the opMode again.
+	 * Used by the Recorder to replay the gamepads
+	 */
+	void setGamepadOverride(Source source, Gamepad gamepad)
+	{
+		gamepadOverrides[source.ordinal()] = gamepad;
+	}
+
 	public boolean getButton(Source source, Button button)
 	{
 		checkPhase();
-		return getButtonState(source, button).currentPressed;
+		return (currentMasks[source.ordinal()] & getRegisteredBit(source, button)) != 0;
 	}
 
 	public boolean getButtonDown(Source source, Button button)
 	{
 		checkPhase();
 
-		ButtonState state = getButtonState(source, button);
-		return state.isCurrentPressed() && !state.isPreviousPressed();
+		int bit = getRegisteredBit(source, button);
+		return (currentMasks[source.ordinal()] & ~previousMasks[source.ordinal()] & bit) != 0;
 	}
 
 	public boolean getButtonUp(Source source, Button button)
 	{
 		checkPhase();
 
-		ButtonState state = getButtonState(source, button);
-		return !state.isCurrentPressed() && state.isPreviousPressed();
+		int bit = getRegisteredBit(source, button);
+		return (~currentMasks[source.ordinal()] & previousMasks[source.ordinal()] & bit) != 0;
 	}
 
 	public float getTrigger(Source source, Button trigger)
 	{
 		checkPhase();
-		Gamepad gamepad = getGamepad(source);
+		int offset = source.ordinal() * AxisCount;
 
 		switch (trigger)
 		{
 			case LEFT_TRIGGER:
-				return gamepad.left_trigger;
+				return axes[offset + LeftTrigger];
 			case RIGHT_TRIGGER:
-				return gamepad.right_trigger;
+				return axes[offset + RightTrigger];
 		}
 
 		throw new IllegalArgumentException("Trigger (" + trigger + ") is illegal");
 	}
 
+	/**
+	 * Returns the shaping applied to joystick of source, which can be configured in awake
+	 */
+	public StickShaping getShaping(Source source, Button joystick)
+	{
+		return shapings[getStickIndex(source, joystick)];
+	}
+
+	private static StickShaping[] createShapings()
+	{
+		StickShaping[] shapings = new StickShaping[Source.length * 2];
+		for (int i = 0; i < shapings.length; i++) shapings[i] = new StickShaping();
+
+		return shapings;
+	}
+
+	/**
+	 * Returns the position of joystick, with up being positive y.
+	 * The returned vector is cached for as long as the joystick does not move
+	 */
 	public Vector2 getVector(Source source, Button joystick)
 	{
 		checkPhase();
-		Gamepad gamepad = getGamepad(source);
 
-		switch (joystick)
+		int index = getStickIndex(source, joystick);
+		Vector2 vector = vectors[index];
+
+		if (vector == null)
 		{
-			case LEFT_JOYSTICK:
-				return new Vector2(gamepad.left_stick_x, -gamepad.left_stick_y);
-			case RIGHT_JOYSTICK:
-				return new Vector2(gamepad.right_stick_x, -gamepad.right_stick_y);
+			int offset = getStickOffset(source, joystick);
+			vector = vectors[index] = new Vector2(axes[offset], -axes[offset + 1]);
 		}
 
-		throw new IllegalArgumentException("Joystick (" + joystick + ") is illegal");
+		return vector;
 	}
 
+	/**
+	 * Writes the position of joystick into result and returns it, with up being positive y
+	 */
+	public MutableVector2 getVector(Source source, Button joystick, MutableVector2 result)
+	{
+		checkPhase();
+
+		int offset = getStickOffset(source, joystick);
+		return result.set(axes[offset], -axes[offset + 1]);
+	}
+
+	/**
+	 * Returns the normalized position of joystick, or zero if it is centered.
+	 * The returned vector is cached for as long as the joystick does not move
+	 */
 	public Vector2 getDirection(Source source, Button joystick)
 	{
-		return getVector(source, joystick).normalize();
+		checkPhase();
+
+		int index = getStickIndex(source, joystick);
+		Vector2 direction = directions[index];
+
+		if (direction == null) direction = directions[index] = getVector(source, joystick).normalize();
+		return direction;
+	}
+
+	/**
+	 * Writes the normalized position of joystick (or zero if it is centered) into result and returns it
+	 */
+	public MutableVector2 getDirection(Source source, Button joystick, MutableVector2 result)
+	{
+		return getVector(source, joystick, result).normalize();
+	}
+
+	public float getX(Source source, Button joystick)
+	{
+		checkPhase();
+		return axes[getStickOffset(source, joystick)];
+	}
+
+	/**
+	 * Returns the vertical position of joystick, with up being positive
+	 */
+	public float getY(Source source, Button joystick)
+	{
+		checkPhase();
+		return -axes[getStickOffset(source, joystick) + 1];
 	}
 
 	public float getMagnitude(Source source, Button joystick)
 	{
-		return getVector(source, joystick).getMagnitude();
+		checkPhase();
+
+		int offset = getStickOffset(source, joystick);
+		float x = axes[offset];
+		float y = axes[offset + 1];
+
+		return (float)Math.sqrt((double)x * x + (double)y * y);
+	}
+
+	/**
+	 * Returns the angle of joystick in degrees counterclockwise from the right, between 0 (inclusive) and 360 (exclusive)
+	 */
+	public float getAngle(Source source, Button joystick)
+	{
+		checkPhase();
+
+		int offset = getStickOffset(source, joystick);
+		return Mathf.toUnsignedAngle((float)Math.atan2(-axes[offset + 1], axes[offset]) * Mathf.Radian2Degree);
+	}
+
+	/**
+	 * Returns the index of the x axis of joystick in axes, the y axis is right after it
+	 */
+	private static int getStickOffset(Source source, Button joystick)
+	{
+		return source.ordinal() * AxisCount + getStickAxis(joystick);
+	}
+
+	private static int getStickIndex(Source source, Button joystick)
+	{
+		return source.ordinal() * 2 + (getStickAxis(joystick) == LeftStickX ? 0 : 1);
+	}
+
+	private static int getStickAxis(Button joystick)
+	{
+		switch (joystick)
+		{
+			case LEFT_JOYSTICK:
+				return LeftStickX;
+			case RIGHT_JOYSTICK:
+				return RightStickX;
+		}
+
+		throw new IllegalArgumentException("Joystick (" + joystick + ") is illegal");
 	}
 
 	@Override
@@ -132,20 +420,173 @@ public class Input extends OpModeBase.Helper
 		updateAll();
 	}
 
+	/**
+	 * Takes the snapshot of the current frame
+	 */
 	private void updateAll()
 	{
-		for (int i = 0; i < registeredButtons.size(); i++)
+		long time = opMode.time.getTimeNanos();
+
+		for (int i = 0; i < Source.length; i++)
+		{
+			Gamepad gamepad = getGamepad(Sources[i]);
+			int offset = i * AxisCount;
+
+			previousMasks[i] = currentMasks[i];
+			currentMasks[i] = gamepad == null ? 0 : packButtons(gamepad) & registeredMasks[i];
+
+			if (gamepad == null) continue;
+
+			updateStick(i, 0, gamepad.left_stick_x, gamepad.left_stick_y, time);
+			updateStick(i, 1, gamepad.right_stick_x, gamepad.right_stick_y, time);
+
+			axes[offset + LeftTrigger] = gamepad.left_trigger;
+			axes[offset + RightTrigger] = gamepad.right_trigger;
+		}
+
+		updateGestures(time);
+	}
+
+	/**
+	 * Shapes the raw axes of a stick into the snapshot, dropping its cached vectors if they changed
+	 */
+	private void updateStick(int source, int stick, float rawX, float rawY, long time)
+	{
+		int index = source * 2 + stick;
+		int offset = source * AxisCount + (stick == 0 ? LeftStickX : RightStickX);
+
+		StickShaping shaping = shapings[index];
+		shaping.shape(rawX, rawY, time);
+
+		if (axes[offset] == shaping.x && axes[offset + 1] == shaping.y) return;
+
+		axes[offset] = shaping.x;
+		axes[offset + 1] = shaping.y;
+
+		vectors[index] = null;
+		directions[index] = null;
+	}
+
+	/**
+	 * Invokes the listeners of the subscribed buttons that changed in this frame and of the holds triggered in it.
+	 * Invoked by OpModeBase during loop only, after all of the helpers' beforeUpdate and before the sequence and behaviors
+	 */
+	void dispatchEvents()
+	{
+		for (int i = 0; i < Source.length; i++)
+		{
+			int changed = (currentMasks[i] ^ previousMasks[i]) & subscribedMasks[i];
+
+			while (changed != 0)
+			{
+				int ordinal = Integer.numberOfTrailingZeros(changed);
+				changed &= changed - 1;
+
+				int index = i * Button.length + ordinal;
+				boolean pressed = (currentMasks[i] & (1 << ordinal)) != 0;
+
+				ButtonListener[] listeners = pressed ? downListeners[index] : upListeners[index];
+				for (ButtonListener listener : listeners) listener.onButton(Sources[i], Buttons[ordinal]);
+			}
+		}
+
+		for (HoldSubscription subscription : holdSubscriptions)
+		{
+			if (subscription.gesture.isTriggered()) subscription.listener.onButton(subscription.gesture.source, subscription.button);
+		}
+	}
+
+	/**
+	 * Steps every gesture with the snapshot of the current frame
+	 */
+	private void updateGestures(long time)
+	{
+		for (int i = 0; i < gestures.size(); i++)
 		{
-			registeredButtons.get(i).updateButton(this);
+			Gesture gesture = gestures.get(i);
+			int source = gesture.source.ordinal();
+
+			int pressed = currentMasks[source];
+			gesture.update(pressed, pressed & ~previousMasks[source], time);
 		}
 	}
 
+	/**
+	 * Returns the pressed buttons of gamepad as a bitmask, bit n is the button with ordinal n
+	 */
+	static int packButtons(Gamepad gamepad)
+	{
+		int mask = 0;
+
+		if (gamepad.a) mask |= buttonBit(Button.A);
+		if (gamepad.b) mask |= buttonBit(Button.B);
+		if (gamepad.x) mask |= buttonBit(Button.X);
+		if (gamepad.y) mask |= buttonBit(Button.Y);
+		if (gamepad.start) mask |= buttonBit(Button.START);
+		if (gamepad.back) mask |= buttonBit(Button.BACK);
+		if (gamepad.guide) mask |= buttonBit(Button.GUIDE);
+		if (gamepad.dpad_right) mask |= buttonBit(Button.DPAD_RIGHT);
+		if (gamepad.dpad_left) mask |= buttonBit(Button.DPAD_LEFT);
+		if (gamepad.dpad_up) mask |= buttonBit(Button.DPAD_UP);
+		if (gamepad.dpad_down) mask |= buttonBit(Button.DPAD_DOWN);
+		if (gamepad.left_bumper) mask |= buttonBit(Button.LEFT_BUMPER);
+		if (gamepad.right_bumper) mask |= buttonBit(Button.RIGHT_BUMPER);
+		if (gamepad.left_stick_button) mask |= buttonBit(Button.LEFT_JOYSTICK_BUTTON);
+		if (gamepad.right_stick_button) mask |= buttonBit(Button.RIGHT_JOYSTICK_BUTTON);
+
+		return mask;
+	}
+
+	/**
+	 * Sets the buttons of gamepad from a bitmask made by packButtons
+	 */
+	static void unpackButtons(int mask, Gamepad gamepad)
+	{
+		gamepad.a = (mask & buttonBit(Button.A)) != 0;
+		gamepad.b = (mask & buttonBit(Button.B)) != 0;
+		gamepad.x = (mask & buttonBit(Button.X)) != 0;
+		gamepad.y = (mask & buttonBit(Button.Y)) != 0;
+		gamepad.start = (mask & buttonBit(Button.START)) != 0;
+		gamepad.back = (mask & buttonBit(Button.BACK)) != 0;
+		gamepad.guide = (mask & buttonBit(Button.GUIDE)) != 0;
+		gamepad.dpad_right = (mask & buttonBit(Button.DPAD_RIGHT)) != 0;
+		gamepad.dpad_left = (mask & buttonBit(Button.DPAD_LEFT)) != 0;
+		gamepad.dpad_up = (mask & buttonBit(Button.DPAD_UP)) != 0;
+		gamepad.dpad_down = (mask & buttonBit(Button.DPAD_DOWN)) != 0;
+		gamepad.left_bumper = (mask & buttonBit(Button.LEFT_BUMPER)) != 0;
+		gamepad.right_bumper = (mask & buttonBit(Button.RIGHT_BUMPER)) != 0;
+		gamepad.left_stick_button = (mask & buttonBit(Button.LEFT_JOYSTICK_BUTTON)) != 0;
+		gamepad.right_stick_button = (mask & buttonBit(Button.RIGHT_JOYSTICK_BUTTON)) != 0;
+	}
+
 	private void checkPhase()
 	{
 		if (opMode.getPhase() == OpModePhase.LOOP || opMode.getPhase() == OpModePhase.INIT_LOOP) return;
 		throw new IllegalStateException("Cannot access input outside of the core loop!");
 	}
 
+	/**
+	 * Receives the button events subscribed to with subscribeDown, subscribeUp or subscribeHold
+	 */
+	public interface ButtonListener
+	{
+		void onButton(Source source, Button button);
+	}
+
+	private static final class HoldSubscription
+	{
+		public HoldSubscription(Gesture gesture, Button button, ButtonListener listener)
+		{
+			this.gesture = gesture;
+			this.button = button;
+			this.listener = listener;
+		}
+
+		public final Gesture gesture;
+		public final Button button;
+		public final ButtonListener listener;
+	}
+
 	public enum Button
 	{
 		A,
@@ -182,193 +623,4 @@ public class Input extends OpModeBase.Helper
 
 		public static final int length = Source.values().length;
 	}
-
-	private static class ButtonState
-	{
-		public ButtonState(Source source, Button button)
-		{
-			if (!allButtonToAccessor.containsKey(button)) throw new IllegalArgumentException("The button (" + button + ") cannot be registered.");
-
-			this.source = source;
-			this.button = button;
-		}
-
-		public final Source source;
-		public final Button button;
-
-		private boolean currentPressed; //WHY CAN THE OUTER CLASS ACCESS THESE TWO FIELDS??????
-		private boolean previousPressed; //JAVA IS SO BAD
-
-		public boolean isCurrentPressed()
-		{
-			return currentPressed;
-		}
-
-		public boolean isPreviousPressed()
-		{
-			return previousPressed;
-		}
-
-		public void updateButton(Input input)
-		{
-			boolean isPressed = allButtonToAccessor.get(button).apply(input.getGamepad(source));
-
-			previousPressed = isCurrentPressed();
-			currentPressed = isPressed;
-		}
-	}
-
-	private static HashMap<Button, Func<Gamepad, Boolean>> allButtonToAccessor = new HashMap<Button, Func<Gamepad, Boolean>>()
-	{{
-		put(Button.A, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.a;
-			}
-		});
-
-		put(Button.B, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.b;
-			}
-		});
-
-		put(Button.X, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.x;
-			}
-		});
-
-		put(Button.Y, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.y;
-			}
-		});
-
-		put(Button.START, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.start;
-			}
-		});
-
-		put(Button.BACK, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.back;
-			}
-		});
-
-		put(Button.GUIDE, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.guide;
-			}
-		});
-
-		put(Button.DPAD_RIGHT, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.dpad_right;
-			}
-		});
-
-		put(Button.DPAD_LEFT, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.dpad_left;
-			}
-		});
-
-		put(Button.DPAD_UP, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.dpad_up;
-			}
-		});
-
-		put(Button.DPAD_DOWN, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.dpad_down;
-			}
-		});
-
-		put(Button.LEFT_BUMPER, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.left_bumper;
-			}
-		});
-
-		put(Button.RIGHT_BUMPER, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.right_bumper;
-			}
-		});
-
-		put(Button.LEFT_JOYSTICK_BUTTON, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.left_stick_button;
-			}
-		});
-
-		put(Button.RIGHT_JOYSTICK_BUTTON, new Func<Gamepad, Boolean>()
-		{
-			@Override
-			public Boolean apply(Gamepad input)
-			{
-				return input.right_stick_button;
-			}
-		});
-	}};
-
-	private static class PriorityExtractor implements CollectionHelper.PriorityExtractor<ButtonState>
-	{
-		public static final PriorityExtractor instance = new PriorityExtractor();
-
-		@Override
-		public int getPriority(ButtonState item)
-		{
-			return getPriority(item.source, item.button);
-		}
-
-		public static int getPriority(Source source, Button button)
-		{
-			return source.ordinal() * Button.length + 4 + button.ordinal();
-		}
-	}
-}
\ No newline at end of file
+}
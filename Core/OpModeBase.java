@@ -4,32 +4,58 @@ import com.qualcomm.robotcore.eventloop.opmode.OpMode;
 
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Set;
 
 import FTCEngine.Core.Auto.ConfigOption;
 import FTCEngine.Core.Auto.JobSequence;
-import FTCEngine.Helpers.CollectionHelper;
 
 public abstract class OpModeBase extends OpMode
 {
 	public OpModeBase()
 	{
 		//Create all helpers
+		recorder = new Recorder(this);
 		time = new Time(this);
+		scheduler = new Scheduler(this);
+		watchdog = new Watchdog(this);
 		input = new Input(this);
 		debug = new Debug(this);
-
-		allHelpers = new Helper[]{time, input, debug};
+		sensorCache = new SensorCache(this);
+		sensorPoller = new SensorPoller(this);
+		eventBus = new EventBus(this);
+		commandBuffer = new CommandBuffer(this);
+		blackbox = new Blackbox(this);
+		profiler = new Profiler(this);
+
+		allHelpers = new Helper[]{recorder, time, scheduler, watchdog, input, debug, sensorCache, sensorPoller, eventBus, commandBuffer, blackbox, profiler};
 	}
 
 	private final Helper[] allHelpers;
-	private List<Behavior> allBehaviors; //Semi-readonly, sorted by class object hashcode for binary search
+	private Behavior[] allBehaviors; //In the order they are invoked, see Behavior.addUpdateBefore and Behavior.addUpdateAfter
+
+	//Behaviors that override the method of each phase, in order; precompiled so dispatching is a plain array loop
+	private Behavior[] initLoopBehaviors;
+	private Behavior[] startBehaviors;
+	private Behavior[] updateBehaviors;
+	private Behavior[] stopBehaviors;
+
+	private IdentityHashMap<Class<?>, Behavior> behaviorRegistry; //Class objects are unique, so lookups can never collide
 	private List<ConfigOption> allConfigOptions;
 
+	public final Recorder recorder;
 	public final Time time;
+	public final Scheduler scheduler;
+	public final Watchdog watchdog;
 	public final Input input;
 	public final Debug debug;
+	public final SensorCache sensorCache;
+	public final SensorPoller sensorPoller;
+	public final EventBus eventBus;
+	public final CommandBuffer commandBuffer;
+	public final Blackbox blackbox;
+	public final Profiler profiler;
 
 	private OpModePhase currentPhase = OpModePhase.INVALID;
 
@@ -42,7 +68,18 @@ public abstract class OpModeBase extends OpMode
 		return Input.Source.CONTROLLER_1;
 	}
 
+	/**
+	 * If true, behaviors that do not depend on each other (see Behavior.addDependencies) will update
+	 * concurrently on a worker pool, using the spare cores of the Control Hub.
+	 * Can be overridden
+	 */
+	protected boolean useParallelUpdate()
+	{
+		return false;
+	}
+
 	private JobSequence runningSequence;
+	private ParallelUpdater parallelUpdater;
 
 	/**
 	 * Returns the current phase of the opMode.
@@ -71,6 +108,8 @@ public abstract class OpModeBase extends OpMode
 
 	public void assignSequence(JobSequence jobSequence)
 	{
+		if (runningSequence != null && runningSequence != jobSequence) runningSequence.cancel();
+
 		if (jobSequence == null) runningSequence = null;
 		else
 		{
@@ -90,23 +129,31 @@ public abstract class OpModeBase extends OpMode
 		ArrayList<Behavior> behaviors = new ArrayList<>();
 		addBehaviors(behaviors);
 
-		allBehaviors = new ArrayList<Behavior>(behaviors.size());
-		CollectionHelper.sort(behaviors, PriorityExtractor.behaviorExtractor); //Sorts by class object hashcode
+		behaviorRegistry = new IdentityHashMap<>(behaviors.size());
 
 		for (int i = 0; i < behaviors.size(); i++)
 		{
 			Behavior current = behaviors.get(i);
-
-			if (i == 0 || current.getClass() != allBehaviors.get(i - 1).getClass()) allBehaviors.add(current);
-			else throw new IllegalArgumentException("Cannot add two behaviors with the same type! Duplicate type: " + current.getClass());
+			if (behaviorRegistry.put(current.getClass(), current) != null) throw new IllegalArgumentException("Cannot add two behaviors with the same type! Duplicate type: " + current.getClass());
 		}
 
+		BehaviorOrder order = new BehaviorOrder(behaviors);
+		allBehaviors = order.getSorted();
+
+		initLoopBehaviors = BehaviorOrder.filter(allBehaviors, "awakeUpdate");
+		startBehaviors = BehaviorOrder.filter(allBehaviors, "start");
+		updateBehaviors = BehaviorOrder.filter(allBehaviors, "update");
+		stopBehaviors = BehaviorOrder.filter(allBehaviors, "stop");
+
+		profiler.setup(allHelpers, updateBehaviors);
+		if (useParallelUpdate()) parallelUpdater = new ParallelUpdater(this, updateBehaviors, order, Runtime.getRuntime().availableProcessors());
+
 		//Initialize internal op mode
 		for (Helper helper : allHelpers) helper.beforeInit();
 		currentPhase = OpModePhase.INITIALIZE;
 
 		//Awake all behaviors
-		for (int i = 0; i < allBehaviors.size(); i++) allBehaviors.get(i).awake(hardwareMap);
+		for (int i = 0; i < allBehaviors.length; i++) allBehaviors[i].awake(hardwareMap);
 		for (Helper helper : allHelpers) helper.afterInit();
 
 		//Register all config options
@@ -130,7 +177,7 @@ public abstract class OpModeBase extends OpMode
 		}
 
 		//Telemetry
-		telemetry.update();
+		debug.update();
 	}
 
 	@Override
@@ -141,8 +188,9 @@ public abstract class OpModeBase extends OpMode
 		//Update
 		currentPhase = OpModePhase.INIT_LOOP;
 
-		for (int i = 0; i < allBehaviors.size(); i++) allBehaviors.get(i).awakeUpdate();
 		for (Helper helper : allHelpers) helper.initLoop();
+		for (int i = 0; i < initLoopBehaviors.length; i++) initLoopBehaviors[i].awakeUpdate();
+		for (Helper helper : allHelpers) helper.afterInitLoop();
 
 		//Update config options
 		Input.Source source = getConfigOptionInputSource();
@@ -167,7 +215,7 @@ public abstract class OpModeBase extends OpMode
 		}
 
 		//Telemetry
-		telemetry.update();
+		debug.update();
 	}
 
 	@Override
@@ -178,30 +226,72 @@ public abstract class OpModeBase extends OpMode
 		currentPhase = OpModePhase.START;
 
 		for (Helper helper : allHelpers) helper.beforeStart();
-		for (Behavior behavior : allBehaviors) behavior.start();
+		for (int i = 0; i < updateBehaviors.length; i++) updateBehaviors[i].resetSchedule();
+		for (int i = 0; i < startBehaviors.length; i++) startBehaviors[i].start();
 		for (Helper helper : allHelpers) helper.afterStart();
 
-		telemetry.update(); //Telemetry
+		debug.update(); //Telemetry
 	}
 
 	@Override
 	public void loop()
 	{
 		currentPhase = OpModePhase.LOOP;
+		profiler.beginFrame();
+
+		for (int i = 0; i < allHelpers.length; i++)
+		{
+			profiler.beginBeforeUpdate(i);
+			allHelpers[i].beforeUpdate();
+			profiler.endBeforeUpdate(i);
+		}
 
-		for (Helper helper : allHelpers) helper.beforeUpdate();
+		//Button listeners, after every helper prepared the frame so they see the same state as the behaviors
+		profiler.beginInputEvents();
+		input.dispatchEvents();
+		profiler.endInputEvents();
 
 		//Update sequence
 		if (hasSequence())
 		{
+			profiler.beginSequence();
 			boolean completed = runningSequence.run();
+
+			profiler.endSequence();
 			if (completed) runningSequence = null;
 		}
 
-		for (Behavior behavior : allBehaviors) behavior.update();
-		for (Helper helper : allHelpers) helper.afterUpdate();
+		if (parallelUpdater != null) parallelUpdater.update(time.getDeltaTime(), watchdog.getDegradation());
+		else
+		{
+			for (int i = 0; i < updateBehaviors.length; i++)
+			{
+				Behavior behavior = updateBehaviors[i];
+
+				int count = behavior.scheduleUpdates(time.getDeltaTime(), watchdog.getDegradation());
+				if (count == 0) continue;
+
+				profiler.beginBehavior(i);
+				for (int j = 0; j < count; j++) behavior.update();
+				profiler.endBehavior(i);
+			}
+		}
+
+		for (int i = 0; i < allHelpers.length; i++)
+		{
+			profiler.beginAfterUpdate(i);
+			allHelpers[i].afterUpdate();
+			profiler.endAfterUpdate(i);
+		}
+
+		//Telemetry
+		profiler.beginTelemetry();
+		debug.update();
 
-		telemetry.update(); //Telemetry
+		profiler.endTelemetry();
+		profiler.endFrame();
+
+		watchdog.checkFrame();
 	}
 
 	@Override
@@ -211,11 +301,23 @@ public abstract class OpModeBase extends OpMode
 
 		currentPhase = OpModePhase.STOP;
 
+		if (runningSequence != null)
+		{
+			runningSequence.cancel();
+			runningSequence = null;
+		}
+
 		for (Helper helper : allHelpers) helper.beforeStop();
-		for (Behavior behavior : allBehaviors) behavior.stop();
+		for (int i = 0; i < stopBehaviors.length; i++) stopBehaviors[i].stop();
 		for (Helper helper : allHelpers) helper.afterStop();
 
-		telemetry.update(); //Telemetry
+		if (parallelUpdater != null)
+		{
+			parallelUpdater.shutdown();
+			parallelUpdater = null;
+		}
+
+		debug.update(); //Telemetry
 		currentPhase = OpModePhase.INVALID;
 	}
 
@@ -225,8 +327,23 @@ public abstract class OpModeBase extends OpMode
 	 */
 	public <T extends Behavior> T getBehavior(Class<T> behaviorClass)
 	{
-		int index = CollectionHelper.binarySearch(allBehaviors, PriorityExtractor.behaviorExtractor, behaviorClass, PriorityExtractor.classExtractor);
-		return index < 0 ? null : (T)allBehaviors.get(index);
+		return (T)behaviorRegistry.get(behaviorClass);
+	}
+
+	/**
+	 * Gets a typed handle to the behavior with behaviorClass, which can be cached (for example in awake)
+	 * and used to access the behavior without any lookup.
+	 * Throws if found none
+	 */
+	public <T extends Behavior> BehaviorHandle<T> getBehaviorHandle(Class<T> behaviorClass)
+	{
+		T behavior = getBehavior(behaviorClass);
+		if (behavior == null) throw new IllegalArgumentException("No behavior with type " + behaviorClass);
+
+		int index = 0;
+		while (allBehaviors[index] != behavior) index++;
+
+		return new BehaviorHandle<>(behavior, index);
 	}
 
 	/**
@@ -282,31 +399,4 @@ public abstract class OpModeBase extends OpMode
 		{
 		}
 	}
-
-	/**
-	 * A helper class used for sorting the behaviors.
-	 */
-	private static class PriorityExtractor
-	{
-		public static final BehaviorExtractor behaviorExtractor = new BehaviorExtractor();
-		public static final ClassExtractor classExtractor = new ClassExtractor();
-
-		public static class BehaviorExtractor implements CollectionHelper.PriorityExtractor<FTCEngine.Core.Behavior>
-		{
-			@Override
-			public int getPriority(FTCEngine.Core.Behavior item)
-			{
-				return item.getClass().hashCode();
-			}
-		}
-
-		public static class ClassExtractor implements CollectionHelper.PriorityExtractor<Class<?>>
-		{
-			@Override
-			public int getPriority(Class<?> item)
-			{
-				return item.hashCode();
-			}
-		}
-	}
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package FTCEngine.Core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Updates the behaviors concurrently on a ForkJoinPool.
+ * Behaviors are grouped into levels using the dependencies and order they declare; behaviors on the same level are
+ * updated at the same time, and a level only starts after every behavior in the previous level finished.
+ * This class should only be used by OpModeBase
+ */
+class ParallelUpdater
+{
+	public ParallelUpdater(OpModeBase opMode, Behavior[] behaviors, BehaviorOrder order, int parallelism)
+	{
+		pool = new ForkJoinPool(parallelism);
+		tasks = new UpdateTask[behaviors.length];
+
+		for (int i = 0; i < tasks.length; i++) tasks[i] = new UpdateTask(behaviors[i], i, opMode.profiler);
+
+		levels = createLevels(behaviors, order);
+	}
+
+	private final ForkJoinPool pool;
+	private final UpdateTask[] tasks;
+	private final UpdateTask[][] levels;
+
+	/**
+	 * Updates all of the behaviors, returns once every behavior has finished updating
+	 */
+	public void update(float frameDeltaTime, int degradation)
+	{
+		for (UpdateTask[] level : levels)
+		{
+			int last = -1;
+
+			for (int i = 0; i < level.length; i++)
+			{
+				UpdateTask task = level[i];
+				task.count = task.behavior.scheduleUpdates(frameDeltaTime, degradation);
+
+				if (task.count == 0) continue;
+				if (last >= 0) execute(level[last]);
+
+				last = i;
+			}
+
+			//Run the last task on this thread so that it does not just sit there waiting
+			if (last < 0) continue;
+
+			try
+			{
+				level[last].invokeInline();
+			}
+			catch (RuntimeException | Error exception)
+			{
+				joinAll(level, last, false);
+				throw exception;
+			}
+
+			joinAll(level, last, true);
+		}
+	}
+
+	/**
+	 * Waits for the tasks before last that were forked, even if some of them throw, so no update outlives the frame
+	 *
+	 * @param rethrow Whether to rethrow the first exception thrown by the tasks once all of them finished
+	 */
+	private static void joinAll(UpdateTask[] level, int last, boolean rethrow)
+	{
+		Throwable failure = null;
+
+		for (int i = 0; i < last; i++)
+		{
+			if (level[i].count == 0) continue;
+
+			try
+			{
+				level[i].join();
+			}
+			catch (RuntimeException | Error exception)
+			{
+				if (failure == null) failure = exception;
+			}
+		}
+
+		if (!rethrow || failure == null) return;
+
+		if (failure instanceof Error) throw (Error)failure;
+		throw (RuntimeException)failure;
+	}
+
+	public void shutdown()
+	{
+		pool.shutdownNow();
+	}
+
+	private void execute(UpdateTask task)
+	{
+		task.reinitialize();
+		pool.execute(task);
+	}
+
+	/**
+	 * Groups the behaviors into levels so that every behavior comes after all of its dependencies
+	 * and everything it should update after, including constraints that go through behaviors that do not update.
+	 * The behaviors are already sorted, so each one only has to be compared with the behaviors before it.
+	 */
+	private UpdateTask[][] createLevels(Behavior[] behaviors, BehaviorOrder order)
+	{
+		int[] depths = new int[behaviors.length];
+		int levelCount = 0;
+
+		for (int i = 0; i < behaviors.length; i++)
+		{
+			for (int j = 0; j < i; j++)
+			{
+				if (order.isAfter(behaviors[i], behaviors[j])) depths[i] = Math.max(depths[i], depths[j] + 1);
+			}
+
+			levelCount = Math.max(levelCount, depths[i] + 1);
+		}
+
+		int[] levelSizes = new int[levelCount];
+		for (int depth : depths) levelSizes[depth]++;
+
+		UpdateTask[][] result = new UpdateTask[levelCount][];
+		for (int i = 0; i < levelCount; i++) result[i] = new UpdateTask[levelSizes[i]];
+
+		for (int i = 0; i < depths.length; i++)
+		{
+			int depth = depths[i];
+			result[depth][result[depth].length - levelSizes[depth]--] = tasks[i];
+		}
+
+		return result;
+	}
+
+	private static class UpdateTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+
+		public UpdateTask(Behavior behavior, int index, Profiler profiler)
+		{
+			this.behavior = behavior;
+			this.index = index;
+			this.profiler = profiler;
+		}
+
+		public final Behavior behavior;
+		private final int index;
+		private final Profiler profiler;
+
+		/**
+		 * The number of times update should be invoked this frame
+		 */
+		public int count;
+
+		@Override
+		protected void compute()
+		{
+			profiler.beginBehavior(index);
+			for (int i = 0; i < count; i++) behavior.update();
+			profiler.endBehavior(index);
+		}
+
+		public void invokeInline()
+		{
+			reinitialize();
+			invoke();
+		}
+	}
+}
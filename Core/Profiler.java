@@ -0,0 +1,601 @@
+package FTCEngine.Core;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import FTCEngine.Helpers.AllocationCounter;
+import FTCEngine.Helpers.RollingWindow;
+
+/**
+ * An opt-in frame profiler that measures how long each Behavior, each Helper phase and the telemetry update takes.
+ * Nothing is recorded (and no time is measured) until it is enabled with setEnabled.
+ * It can also track the bytes allocated by each of them and detect the frames during which the garbage collector ran.
+ */
+public class Profiler extends OpModeBase.Helper
+{
+	public Profiler(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	/**
+	 * The number of frames each sample keeps track of
+	 */
+	public static final int WindowLength = 128;
+
+	private static final long PageRefreshInterval = 500000000L; //Nanoseconds between formatting the page, which allocates
+
+	private boolean enabled;
+	private boolean pageVisible;
+	private boolean allocationTracking;
+
+	private String[] pageLines; //Formatted on refresh and added again every frame in between, null for empty samples
+	private long pageRefreshTime;
+
+	/**
+	 * If true, durations are measured (but not recorded) even when the profiler is disabled, used by the Watchdog
+	 */
+	boolean timingRequired;
+
+	private Sample frameCulprit;
+	private long frameCulpritDuration;
+
+	private Sample frameSample;
+	private Sample sequenceSample;
+	private Sample inputEventsSample;
+	private Sample telemetrySample;
+	private Sample garbageCollectionSample;
+
+	private Sample[] behaviorSamples;
+	private Sample[] beforeUpdateSamples;
+	private Sample[] afterUpdateSamples;
+
+	private Sample[] allSamples;
+
+	private Thread frameThread; //The thread running the frame
+	private int frameCounterReads; //The allocation counter reads made on frameThread since the frame began, each one allocates
+	private long counterOverhead; //The bytes one read of the allocation counter allocates, which shrinks once the JIT compiles the read
+	private final AtomicLong workerAllocation = new AtomicLong(); //Bytes allocated by the behaviors updating on other threads this frame
+
+	private WeakReference<Object> garbageCollectionSentinel = new WeakReference<>(new Object());
+	private long frameCount;
+	private long garbageCollectionFrameCount;
+	private long lastGarbageCollectionFrame = -1L;
+
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/**
+	 * Starts or stops recording. Disabling does not clear the samples recorded so far.
+	 */
+	public void setEnabled(boolean enabled)
+	{
+		this.enabled = enabled;
+	}
+
+	public boolean isPageVisible()
+	{
+		return pageVisible;
+	}
+
+	/**
+	 * If true, a compact summary of every sample will be added to the telemetry each frame.
+	 * The summary is formatted again only every PageRefreshInterval, so the page does not allocate every frame
+	 */
+	public void setPageVisible(boolean pageVisible)
+	{
+		this.pageVisible = pageVisible;
+		pageLines = null; //Formatted again as soon as it is shown
+	}
+
+	public boolean isAllocationTracking()
+	{
+		return allocationTracking;
+	}
+
+	/**
+	 * If true (and the runtime supports it, see AllocationCounter), the profiler also records how many bytes each sample allocates.
+	 * This is a diagnostic mode, reading the allocation counter costs more than reading the time.
+	 */
+	public void setAllocationTracking(boolean allocationTracking)
+	{
+		this.allocationTracking = allocationTracking && AllocationCounter.isSupported();
+	}
+
+	/**
+	 * Returns the total number of samples, which is the same throughout the lifetime of the opMode after initialization
+	 */
+	public int getSampleCount()
+	{
+		return allSamples == null ? 0 : allSamples.length;
+	}
+
+	/**
+	 * Returns the sample at index, use with getSampleCount to iterate through all samples without allocating
+	 */
+	public Sample getSample(int index)
+	{
+		return allSamples[index];
+	}
+
+	/**
+	 * Returns the sample measuring the entire loop method. Its allocations are the ones of the OpMode thread
+	 * plus the ones of the behaviors updating on ParallelUpdater workers (but not the work of the pool itself)
+	 */
+	public Sample getFrameSample()
+	{
+		return frameSample;
+	}
+
+	/**
+	 * Returns the sample measuring JobSequence.run
+	 */
+	public Sample getSequenceSample()
+	{
+		return sequenceSample;
+	}
+
+	/**
+	 * Returns the sample measuring the button listeners invoked by Input.dispatchEvents
+	 */
+	public Sample getInputEventsSample()
+	{
+		return inputEventsSample;
+	}
+
+	/**
+	 * Returns the sample measuring telemetry.update
+	 */
+	public Sample getTelemetrySample()
+	{
+		return telemetrySample;
+	}
+
+	/**
+	 * Returns the sample holding the entire loop duration of only the frames during which the garbage collector ran
+	 */
+	public Sample getGarbageCollectionSample()
+	{
+		return garbageCollectionSample;
+	}
+
+	/**
+	 * Returns the number of recorded frames during which the garbage collector ran
+	 */
+	public long getGarbageCollectionFrameCount()
+	{
+		return garbageCollectionFrameCount;
+	}
+
+	/**
+	 * Returns the index of the last recorded frame during which the garbage collector ran, or -1 if none
+	 */
+	public long getLastGarbageCollectionFrame()
+	{
+		return lastGarbageCollectionFrame;
+	}
+
+	/**
+	 * Returns the sample measuring the update method of the behavior with behaviorClass
+	 * Returns null if found none
+	 */
+	public Sample getBehaviorSample(Class<? extends Behavior> behaviorClass)
+	{
+		if (behaviorSamples == null) return null;
+
+		for (int i = 0; i < behaviorSamples.length; i++)
+		{
+			if (behaviorSamples[i].source == behaviorClass) return behaviorSamples[i];
+		}
+
+		return null;
+	}
+
+	/**
+	 * Returns a multi-line report of the samples allocating the most bytes per frame on average
+	 *
+	 * @param maxCount The maximum number of samples in the report
+	 */
+	public String getAllocationReport(int maxCount)
+	{
+		if (maxCount <= 0) throw new IllegalArgumentException("maxCount must be a positive number");
+		if (allSamples == null) return "";
+
+		Sample[] sorted = Arrays.copyOf(allSamples, allSamples.length);
+
+		//Insertion sort by mean allocation descending, there are only a handful of samples
+		for (int i = 1; i < sorted.length; i++)
+		{
+			Sample current = sorted[i];
+			int j = i - 1;
+
+			for (; j >= 0 && sorted[j].getMeanAllocation() < current.getMeanAllocation(); j--) sorted[j + 1] = sorted[j];
+			sorted[j + 1] = current;
+		}
+
+		StringBuilder builder = new StringBuilder();
+		builder.append(String.format("GC during %d of %d frames", garbageCollectionFrameCount, frameCount));
+
+		for (int i = 0; i < Math.min(maxCount, sorted.length); i++)
+		{
+			Sample sample = sorted[i];
+			if (sample.getCount() == 0 || sample == frameSample) continue;
+
+			builder.append(System.getProperty("line.separator"));
+			builder.append(String.format("%s: %.0f B mean, %d B max", sample.name, sample.getMeanAllocation(), sample.getMaxAllocation()));
+		}
+
+		return builder.toString();
+	}
+
+	/**
+	 * Invoked by OpModeBase once all behaviors are fetched to allocate all of the samples
+	 */
+	void setup(OpModeBase.Helper[] helpers, Behavior[] behaviors)
+	{
+		frameSample = new Sample("Frame", null);
+		sequenceSample = new Sample("Sequence", null);
+		inputEventsSample = new Sample("Input events", null);
+		telemetrySample = new Sample("Telemetry", null);
+		garbageCollectionSample = new Sample("GC frames", null);
+
+		behaviorSamples = new Sample[behaviors.length];
+		beforeUpdateSamples = new Sample[helpers.length];
+		afterUpdateSamples = new Sample[helpers.length];
+
+		for (int i = 0; i < behaviorSamples.length; i++)
+		{
+			Class<?> type = behaviors[i].getClass();
+			behaviorSamples[i] = new Sample(type.getSimpleName(), type);
+		}
+
+		for (int i = 0; i < helpers.length; i++)
+		{
+			Class<?> type = helpers[i].getClass();
+
+			beforeUpdateSamples[i] = new Sample(type.getSimpleName() + ".before", type);
+			afterUpdateSamples[i] = new Sample(type.getSimpleName() + ".after", type);
+		}
+
+		allSamples = new Sample[5 + behaviorSamples.length + helpers.length * 2];
+		int index = 0;
+
+		allSamples[index++] = frameSample;
+		allSamples[index++] = garbageCollectionSample;
+		allSamples[index++] = inputEventsSample;
+		allSamples[index++] = sequenceSample;
+		allSamples[index++] = telemetrySample;
+
+		for (Sample sample : behaviorSamples) allSamples[index++] = sample;
+		for (Sample sample : beforeUpdateSamples) allSamples[index++] = sample;
+		for (Sample sample : afterUpdateSamples) allSamples[index++] = sample;
+	}
+
+	/**
+	 * Returns the section (other than the entire frame) that took the longest in the last frame,
+	 * only available if the profiler is enabled or timing is required. NOTE: Approximate when behaviors update in parallel
+	 */
+	Sample getFrameCulprit()
+	{
+		return frameCulprit;
+	}
+
+	void beginFrame()
+	{
+		frameCulprit = null;
+		frameCulpritDuration = 0L;
+
+		frameThread = Thread.currentThread();
+
+		if (enabled && allocationTracking)
+		{
+			//Measured every frame through the same path as the samples, since AllocationCounter.getOverhead is measured before any compilation
+			long first = readAllocationCounter();
+			counterOverhead = Math.max(readAllocationCounter() - first, 0L);
+		}
+
+		frameSample.begin();
+
+		frameCounterReads = 0;
+		workerAllocation.set(0L);
+	}
+
+	void endFrame()
+	{
+		frameSample.end();
+		if (!enabled || garbageCollectionSentinel.get() != null) return;
+
+		//The sentinel is only weakly reachable, so it being cleared means the garbage collector ran during this frame
+		garbageCollectionSentinel = new WeakReference<>(new Object());
+
+		garbageCollectionFrameCount++;
+		lastGarbageCollectionFrame = frameCount - 1;
+
+		garbageCollectionSample.record(frameSample.getLast(), frameSample.getLastAllocation());
+	}
+
+	private long readAllocationCounter()
+	{
+		if (Thread.currentThread() == frameThread) frameCounterReads++;
+		return AllocationCounter.getThreadAllocatedBytes();
+	}
+
+	void beginInputEvents()
+	{
+		inputEventsSample.begin();
+	}
+
+	void endInputEvents()
+	{
+		inputEventsSample.end();
+	}
+
+	void beginSequence()
+	{
+		sequenceSample.begin();
+	}
+
+	void endSequence()
+	{
+		sequenceSample.end();
+	}
+
+	void beginTelemetry()
+	{
+		telemetrySample.begin();
+	}
+
+	void endTelemetry()
+	{
+		telemetrySample.end();
+	}
+
+	void beginBehavior(int index)
+	{
+		behaviorSamples[index].begin();
+	}
+
+	void endBehavior(int index)
+	{
+		behaviorSamples[index].end();
+	}
+
+	void beginBeforeUpdate(int index)
+	{
+		beforeUpdateSamples[index].begin();
+	}
+
+	void endBeforeUpdate(int index)
+	{
+		beforeUpdateSamples[index].end();
+	}
+
+	void beginAfterUpdate(int index)
+	{
+		afterUpdateSamples[index].begin();
+	}
+
+	void endAfterUpdate(int index)
+	{
+		afterUpdateSamples[index].end();
+	}
+
+	@Override
+	public void beforeUpdate()
+	{
+		super.beforeUpdate();
+		if (enabled) frameCount++;
+	}
+
+	@Override
+	public void afterUpdate()
+	{
+		super.afterUpdate();
+		if (!pageVisible || allSamples == null) return;
+
+		long time = opMode.time.getTimeNanos();
+		boolean refresh = pageLines == null || time - pageRefreshTime >= PageRefreshInterval;
+
+		if (refresh)
+		{
+			if (pageLines == null) pageLines = new String[allSamples.length];
+			pageRefreshTime = time;
+		}
+
+		opMode.debug.addData(allocationTracking ? "Profiler (min/mean/p99 ms, mean B)" : "Profiler (min/mean/p99 ms)");
+
+		for (int i = 0; i < allSamples.length; i++)
+		{
+			Sample sample = allSamples[i];
+			if (refresh) pageLines[i] = sample.getCount() == 0 ? null : formatPageLine(sample);
+
+			//The same string is added again between refreshes, so Debug sees no change and sends nothing
+			if (pageLines[i] != null) opMode.debug.addData(sample.name, pageLines[i]);
+		}
+	}
+
+	private String formatPageLine(Sample sample)
+	{
+		String times = String.format("%.2f/%.2f/%.2f", sample.getMin() / 1E6, sample.getMean() / 1E6, sample.getPercentile(0.99f) / 1E6);
+		return allocationTracking ? times + String.format(", %.0f", sample.getMeanAllocation()) : times;
+	}
+
+	/**
+	 * Rolling window of the recorded durations (in nanoseconds) and allocations (in bytes) of one section of the frame
+	 */
+	public final class Sample
+	{
+		private Sample(String name, Class<?> source)
+		{
+			this.name = name;
+			this.source = source;
+		}
+
+		public final String name;
+		private final Class<?> source;
+
+		private final RollingWindow durations = new RollingWindow(WindowLength);
+		private final RollingWindow allocations = new RollingWindow(WindowLength);
+
+		private long startTime;
+		private long startAllocation;
+
+		private long lastDuration;
+		private long overrunCount;
+
+		private void begin()
+		{
+			if (!enabled && !timingRequired)
+			{
+				startTime = 0L;
+				return;
+			}
+
+			if (allocationTracking) startAllocation = readAllocationCounter();
+			startTime = System.nanoTime();
+		}
+
+		private void end()
+		{
+			if (startTime == 0L) return; //Profiler was enabled in the middle of the measurement
+			long duration = System.nanoTime() - startTime;
+
+			startTime = 0L;
+			lastDuration = duration;
+
+			if (this != frameSample && duration > frameCulpritDuration)
+			{
+				frameCulprit = this;
+				frameCulpritDuration = duration;
+			}
+
+			if (!enabled) return;
+
+			long allocation = 0L;
+
+			if (allocationTracking && startAllocation != 0L)
+			{
+				allocation = readAllocationCounter() - startAllocation;
+
+				if (this == frameSample)
+				{
+					//Every counter read in the frame allocated on this thread, including the ones of the nested samples
+					allocation -= counterOverhead * frameCounterReads;
+					allocation = Math.max(allocation, 0L) + workerAllocation.getAndSet(0L);
+				}
+				else
+				{
+					allocation = Math.max(allocation - counterOverhead, 0L);
+					if (Thread.currentThread() != frameThread) workerAllocation.addAndGet(allocation);
+				}
+			}
+
+			record(duration, allocation);
+		}
+
+		private void record(long duration, long allocation)
+		{
+			durations.add(duration);
+			allocations.add(allocation);
+		}
+
+		/**
+		 * Returns the number of durations recorded in the window
+		 */
+		public int getCount()
+		{
+			return durations.getCount();
+		}
+
+		/**
+		 * Returns the number of frames that went over the Watchdog budget where this section took the longest
+		 */
+		public long getOverrunCount()
+		{
+			return overrunCount;
+		}
+
+		/**
+		 * Invoked by the Watchdog when this section caused a frame to go over budget
+		 */
+		void addOverrun()
+		{
+			overrunCount++;
+		}
+
+		/**
+		 * Returns the duration of the last measurement, even if it was not recorded because the profiler is disabled
+		 */
+		long getLastMeasured()
+		{
+			return lastDuration;
+		}
+
+		/**
+		 * Returns the most recent duration
+		 */
+		public long getLast()
+		{
+			return durations.getLast();
+		}
+
+		public long getMin()
+		{
+			return durations.getMin();
+		}
+
+		public long getMax()
+		{
+			return durations.getMax();
+		}
+
+		public double getMean()
+		{
+			return durations.getMean();
+		}
+
+		/**
+		 * Returns the duration below which percentile (between 0 and 1) of the recorded durations fall
+		 */
+		public long getPercentile(float percentile)
+		{
+			return durations.getPercentile(percentile);
+		}
+
+		/**
+		 * Returns the most recent number of bytes allocated, always 0 if allocation tracking is off
+		 */
+		public long getLastAllocation()
+		{
+			return allocations.getLast();
+		}
+
+		public long getMaxAllocation()
+		{
+			return allocations.getMax();
+		}
+
+		public double getMeanAllocation()
+		{
+			return allocations.getMean();
+		}
+
+		/**
+		 * Clears all of the recorded durations and allocations
+		 */
+		public void reset()
+		{
+			durations.clear();
+			allocations.clear();
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+}
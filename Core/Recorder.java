@@ -0,0 +1,435 @@
+package FTCEngine.Core;
+
+import com.qualcomm.robotcore.hardware.Gamepad;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Records the inputs of every frame (the gamepads, the time and the values of the SensorCache readings) into a compact binary log,
+ * and replays such a log so that the behaviors and sequences run exactly as they did, frame for frame.
+ * The log is an append-only memory-mapped file, so recording a frame is only a few memory writes.
+ * While recording or replaying, Time.getTime only changes between frames so that it can be reproduced.
+ * Use HeadlessRuntime.replay to replay a log as fast as possible.
+ */
+public class Recorder extends OpModeBase.Helper
+{
+	public Recorder(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	private static final int Magic = 0x46544352; //"FTCR"
+	private static final short Version = 1;
+	private static final int ChunkSize = 1 << 20; //The log is mapped one chunk at a time as it grows
+
+	private static final int GamepadSize = 4 + 6 * 4; //Buttons as bits (see Input.packButtons), then the axes
+	private static final int FrameSize = 1 + 8 + Input.Source.length * GamepadSize + 2; //Phase, time, gamepads and reading count
+	private static final int ReadingSize = 2 + 8;
+
+	private static final Input.Source[] Sources = Input.Source.values();
+	private static final OpModePhase[] Phases = OpModePhase.values();
+
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	private long bufferStart; //The position of the buffer in the file
+
+	private boolean replaying;
+
+	private long frameCount;
+	private long startTime;
+
+	//The readings of the initialization frame being replayed, applied as the readings are registered in awake
+	private double[] initValues = new double[0];
+	private boolean[] initValuesSet = new boolean[0];
+
+	private final FrameClock clock = new FrameClock();
+
+	public boolean isRecording()
+	{
+		return channel != null && !replaying;
+	}
+
+	public boolean isReplaying()
+	{
+		return channel != null && replaying;
+	}
+
+	/**
+	 * Returns the number of frames (of every phase) recorded or replayed so far
+	 */
+	public long getFrameCount()
+	{
+		return frameCount;
+	}
+
+	/**
+	 * Starts recording to file, overwriting it. Should be invoked before init, the recording ends after stop
+	 */
+	public void record(File file)
+	{
+		open(file, false);
+
+		try
+		{
+			channel.truncate(0L);
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0L, ChunkSize);
+		}
+		catch (IOException exception)
+		{
+			close();
+			throw new IllegalStateException("Cannot record to " + file, exception);
+		}
+
+		buffer.putInt(Magic);
+		buffer.putShort(Version);
+	}
+
+	/**
+	 * Replays the log in file, which was made by record. Should be invoked before init.
+	 * The opMode has to run the same phases as the log (see getNextPhase), after the end of the log the inputs stay as in its last frame
+	 */
+	public void replay(File file)
+	{
+		open(file, true);
+
+		try
+		{
+			buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0L, channel.size());
+		}
+		catch (IOException exception)
+		{
+			close();
+			throw new IllegalStateException("Cannot replay " + file, exception);
+		}
+
+		if (buffer.remaining() < 6 || buffer.getInt() != Magic || buffer.getShort() != Version)
+		{
+			close();
+			throw new IllegalArgumentException(file + " is not a recording of a supported version!");
+		}
+	}
+
+	private void open(File file, boolean replaying)
+	{
+		if (opMode.getPhase() != OpModePhase.INVALID) throw new IllegalStateException("Can only record or replay before init! Phase: " + opMode.getPhase());
+		if (channel != null) throw new IllegalStateException("Already " + (this.replaying ? "replaying" : "recording") + "!");
+
+		try
+		{
+			channel = new RandomAccessFile(file, replaying ? "r" : "rw").getChannel();
+		}
+		catch (IOException exception)
+		{
+			throw new IllegalStateException("Cannot open " + file, exception);
+		}
+
+		this.replaying = replaying;
+
+		bufferStart = 0L;
+		frameCount = 0L;
+	}
+
+	/**
+	 * Returns the phase of the next frame in the log being replayed, or INVALID if the log ended or nothing is being replayed
+	 */
+	public OpModePhase getNextPhase()
+	{
+		if (!isReplaying() || buffer.remaining() < FrameSize) return OpModePhase.INVALID;
+
+		int position = buffer.position();
+		int readingCount = buffer.getShort(position + FrameSize - 2);
+
+		//A phase of 0 (INVALID) or a partial frame means the recording ended without closing the log
+		if (buffer.remaining() < FrameSize + readingCount * ReadingSize) return OpModePhase.INVALID;
+
+		int phase = buffer.get(position);
+		return phase > 0 && phase < Phases.length ? Phases[phase] : OpModePhase.INVALID;
+	}
+
+	private void frame(OpModePhase phase)
+	{
+		if (channel == null) return;
+
+		if (replaying) readFrame(phase);
+		else writeFrame(phase);
+
+		frameCount++;
+	}
+
+	private void writeFrame(OpModePhase phase)
+	{
+		long time = clock.latch();
+		if (frameCount == 0L) startTime = time;
+
+		ensureCapacity(FrameSize);
+
+		buffer.put((byte)phase.ordinal());
+		buffer.putLong(time - startTime);
+
+		for (int i = 0; i < Input.Source.length; i++) writeGamepad(opMode.input.getGamepad(Sources[i]));
+		//The readings are written at the end of the phase (see writeReadings), once the behaviors read them
+	}
+
+	private void writeReadings()
+	{
+		SensorCache cache = opMode.sensorCache;
+		int count = 0;
+
+		for (int i = 0; i < cache.getReadingCount(); i++)
+		{
+			if (cache.getReading(i).isCurrent()) count++;
+		}
+
+		ensureCapacity(2 + count * ReadingSize);
+		buffer.putShort((short)count);
+
+		for (int i = 0; i < cache.getReadingCount(); i++)
+		{
+			SensorCache.Reading reading = cache.getReading(i);
+			if (!reading.isCurrent()) continue;
+
+			buffer.putShort((short)reading.index);
+			buffer.putDouble(reading.getLast());
+		}
+	}
+
+	private void readFrame(OpModePhase phase)
+	{
+		OpModePhase recorded = getNextPhase();
+
+		if (recorded == OpModePhase.INVALID) return; //Keep the inputs of the last frame
+		if (recorded != phase) throw new IllegalStateException("The opMode diverged from the recording! Expected " + recorded + " but the opMode is in " + phase);
+
+		buffer.get();
+		clock.time = buffer.getLong();
+
+		for (int i = 0; i < Input.Source.length; i++) readGamepad(opMode.input.getGamepad(Sources[i]));
+
+		SensorCache cache = opMode.sensorCache;
+		int count = buffer.getShort();
+
+		for (int i = 0; i < count; i++)
+		{
+			int index = buffer.getShort();
+			double value = buffer.getDouble();
+
+			if (phase == OpModePhase.INITIALIZE)
+			{
+				setInitValue(index, value); //Nothing is registered before awake
+				continue;
+			}
+
+			if (index >= cache.getReadingCount()) throw new IllegalStateException("The recording has more sensor readings than are registered!");
+			cache.getReading(index).preload(value);
+		}
+	}
+
+	private void setInitValue(int index, double value)
+	{
+		if (index >= initValues.length)
+		{
+			int length = Math.max(index + 1, initValues.length * 2);
+
+			initValues = Arrays.copyOf(initValues, length);
+			initValuesSet = Arrays.copyOf(initValuesSet, length);
+		}
+
+		initValues[index] = value;
+		initValuesSet[index] = true;
+	}
+
+	/**
+	 * Invoked by the SensorCache when reading is registered, so the reads in awake are replayed too
+	 */
+	void onRegister(SensorCache.Reading reading)
+	{
+		if (!isReplaying() || reading.index >= initValuesSet.length || !initValuesSet[reading.index]) return;
+		reading.preloadCurrent(initValues[reading.index]);
+	}
+
+	private void writeGamepad(Gamepad gamepad)
+	{
+		if (gamepad == null)
+		{
+			for (int i = 0; i < GamepadSize; i++) buffer.put((byte)0);
+			return;
+		}
+
+		buffer.putInt(Input.packButtons(gamepad));
+
+		buffer.putFloat(gamepad.left_stick_x);
+		buffer.putFloat(gamepad.left_stick_y);
+		buffer.putFloat(gamepad.right_stick_x);
+		buffer.putFloat(gamepad.right_stick_y);
+		buffer.putFloat(gamepad.left_trigger);
+		buffer.putFloat(gamepad.right_trigger);
+	}
+
+	private void readGamepad(Gamepad gamepad)
+	{
+		Input.unpackButtons(buffer.getInt(), gamepad);
+
+		gamepad.left_stick_x = buffer.getFloat();
+		gamepad.left_stick_y = buffer.getFloat();
+		gamepad.right_stick_x = buffer.getFloat();
+		gamepad.right_stick_y = buffer.getFloat();
+		gamepad.left_trigger = buffer.getFloat();
+		gamepad.right_trigger = buffer.getFloat();
+	}
+
+	/**
+	 * Maps the next chunk of the file if the current one cannot fit size more bytes
+	 */
+	private void ensureCapacity(int size)
+	{
+		if (buffer.remaining() >= size) return;
+		bufferStart += buffer.position();
+
+		try
+		{
+			buffer = channel.map(FileChannel.MapMode.READ_WRITE, bufferStart, Math.max(ChunkSize, size));
+		}
+		catch (IOException exception)
+		{
+			throw new IllegalStateException("Cannot extend the recording!", exception);
+		}
+	}
+
+	private void close()
+	{
+		try
+		{
+			if (buffer != null && !replaying)
+			{
+				buffer.force();
+				channel.truncate(bufferStart + buffer.position()); //Remove the unused part of the last chunk
+			}
+
+			channel.close();
+		}
+		catch (IOException exception)
+		{
+			throw new IllegalStateException("Cannot close the recording!", exception);
+		}
+		finally
+		{
+			channel = null;
+			buffer = null;
+		}
+	}
+
+	@Override
+	public void beforeInit()
+	{
+		super.beforeInit();
+		if (channel == null) return;
+
+		//Time reads the clock after this, since the recorder is the first helper
+		clock.source = opMode.time.getClock();
+		opMode.time.setClock(clock);
+
+		if (replaying)
+		{
+			for (int i = 0; i < Input.Source.length; i++) opMode.input.setGamepadOverride(Sources[i], new Gamepad());
+		}
+
+		frame(OpModePhase.INITIALIZE);
+	}
+
+	@Override
+	public void afterInit()
+	{
+		super.afterInit();
+		if (isRecording()) writeReadings();
+
+		initValues = new double[0];
+		initValuesSet = new boolean[0];
+	}
+
+	@Override
+	public void initLoop()
+	{
+		super.initLoop();
+		frame(OpModePhase.INIT_LOOP);
+	}
+
+	@Override
+	public void afterInitLoop()
+	{
+		super.afterInitLoop();
+		if (isRecording()) writeReadings();
+	}
+
+	@Override
+	public void beforeStart()
+	{
+		super.beforeStart();
+		frame(OpModePhase.START);
+	}
+
+	@Override
+	public void afterStart()
+	{
+		super.afterStart();
+		if (isRecording()) writeReadings();
+	}
+
+	@Override
+	public void beforeUpdate()
+	{
+		super.beforeUpdate();
+		frame(OpModePhase.LOOP);
+	}
+
+	@Override
+	public void afterUpdate()
+	{
+		super.afterUpdate();
+		if (isRecording()) writeReadings();
+	}
+
+	@Override
+	public void beforeStop()
+	{
+		super.beforeStop();
+		frame(OpModePhase.STOP);
+	}
+
+	@Override
+	public void afterStop()
+	{
+		super.afterStop();
+		if (channel == null) return;
+
+		if (!replaying) writeReadings();
+		close();
+		opMode.time.setClock(clock.source);
+
+		for (int i = 0; i < Input.Source.length; i++) opMode.input.setGamepadOverride(Sources[i], null);
+	}
+
+	/**
+	 * Only changes between frames: when recording it latches the time of the source, when replaying the time is set from the log
+	 */
+	private static class FrameClock implements Time.Clock
+	{
+		public Time.Clock source;
+		public long time;
+
+		public long latch()
+		{
+			return time = source.nanoTime();
+		}
+
+		@Override
+		public long nanoTime()
+		{
+			return time;
+		}
+	}
+}
@@ -0,0 +1,260 @@
+package FTCEngine.Core;
+
+import FTCEngine.Delegates.Action;
+
+/**
+ * Invokes callbacks after a delay or periodically, and provides timers that can be checked for having fired instead of reading the time.
+ * The timers are kept in a min-heap ordered by when they are due, so every frame only the timers that are due are touched,
+ * no matter how many are waiting. Timers fire at the start of the frame (after Time is updated), in the order they are due.
+ */
+public class Scheduler extends OpModeBase.Helper
+{
+	public Scheduler(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	private Timer[] heap = new Timer[16];
+	private int size;
+
+	/**
+	 * Returns the number of timers waiting to fire
+	 */
+	public synchronized int getPendingCount()
+	{
+		return size;
+	}
+
+	/**
+	 * Creates a timer which fires once after delay seconds, invoking callback (if not null).
+	 * NOTE: This method is synchronized so behaviors updating in parallel can schedule timers
+	 */
+	public Timer schedule(float delay, Action<Timer> callback)
+	{
+		if (delay < 0f) throw new IllegalArgumentException("delay cannot be negative!");
+		return schedule(toNanos(delay), 0L, callback);
+	}
+
+	/**
+	 * Creates a timer which fires every period seconds, starting after one period, until it is cancelled.
+	 * If frames are slower than period, the timer fires once per frame instead of catching up
+	 */
+	public Timer schedulePeriodic(float period, Action<Timer> callback)
+	{
+		if (period <= 0f) throw new IllegalArgumentException("period must be a positive number!");
+
+		long nanos = toNanos(period);
+		return schedule(nanos, nanos, callback);
+	}
+
+	private synchronized Timer schedule(long delay, long period, Action<Timer> callback)
+	{
+		Timer timer = new Timer(this, period, callback);
+
+		timer.dueTime = opMode.time.getTimeNanos() + delay;
+		add(timer);
+
+		return timer;
+	}
+
+	private static long toNanos(float seconds)
+	{
+		return (long)(seconds * 1E9);
+	}
+
+	/**
+	 * Fires every timer that is due
+	 */
+	private void fireDue()
+	{
+		long now = opMode.time.getTimeNanos();
+
+		while (true)
+		{
+			Timer timer;
+
+			synchronized (this)
+			{
+				if (size == 0 || heap[0].dueTime > now) return;
+				timer = heap[0];
+
+				removeAt(0);
+			}
+
+			timer.fireCount++;
+			if (timer.callback != null) timer.callback.accept(timer);
+
+			if (timer.period == 0L || timer.cancelled) continue;
+
+			synchronized (this)
+			{
+				timer.dueTime += timer.period;
+				if (timer.dueTime <= now) timer.dueTime = now + timer.period; //Skip the periods missed by slow frames
+
+				add(timer);
+			}
+		}
+	}
+
+	private synchronized void cancel(Timer timer)
+	{
+		timer.cancelled = true;
+		if (timer.heapIndex >= 0) removeAt(timer.heapIndex);
+	}
+
+	private void add(Timer timer)
+	{
+		if (size == heap.length)
+		{
+			Timer[] newHeap = new Timer[size * 2];
+			System.arraycopy(heap, 0, newHeap, 0, size);
+
+			heap = newHeap;
+		}
+
+		heap[size] = timer;
+		timer.heapIndex = size;
+
+		siftUp(size++);
+	}
+
+	private void removeAt(int index)
+	{
+		Timer removed = heap[index];
+		Timer last = heap[--size];
+
+		heap[size] = null;
+		removed.heapIndex = -1;
+
+		if (index == size) return;
+
+		heap[index] = last;
+		last.heapIndex = index;
+
+		siftDown(index);
+		siftUp(index);
+	}
+
+	private void siftUp(int index)
+	{
+		Timer timer = heap[index];
+
+		while (index > 0)
+		{
+			int parent = (index - 1) / 2;
+			if (heap[parent].dueTime <= timer.dueTime) break;
+
+			move(parent, index);
+			index = parent;
+		}
+
+		heap[index] = timer;
+		timer.heapIndex = index;
+	}
+
+	private void siftDown(int index)
+	{
+		Timer timer = heap[index];
+
+		while (true)
+		{
+			int child = index * 2 + 1;
+			if (child >= size) break;
+
+			if (child + 1 < size && heap[child + 1].dueTime < heap[child].dueTime) child++;
+			if (timer.dueTime <= heap[child].dueTime) break;
+
+			move(child, index);
+			index = child;
+		}
+
+		heap[index] = timer;
+		timer.heapIndex = index;
+	}
+
+	private void move(int from, int to)
+	{
+		heap[to] = heap[from];
+		heap[to].heapIndex = to;
+	}
+
+	@Override
+	public void initLoop()
+	{
+		super.initLoop();
+		fireDue();
+	}
+
+	@Override
+	public void beforeUpdate()
+	{
+		super.beforeUpdate();
+		fireDue();
+	}
+
+	@Override
+	public synchronized void afterStop()
+	{
+		super.afterStop();
+
+		//Timers are relative to init, so they cannot carry over to the next run
+		while (size > 0) cancel(heap[size - 1]);
+	}
+
+	/**
+	 * A scheduled callback or wake-up
+	 */
+	public static final class Timer
+	{
+		private Timer(Scheduler scheduler, long period, Action<Timer> callback)
+		{
+			this.scheduler = scheduler;
+			this.period = period;
+			this.callback = callback;
+		}
+
+		private final Scheduler scheduler;
+		private final long period; //0 for timers that fire once
+		private final Action<Timer> callback;
+
+		private long dueTime; //In nanoseconds since init
+		private int heapIndex = -1;
+
+		private long fireCount;
+		private boolean cancelled;
+
+		/**
+		 * Returns whether the timer fired at least once
+		 */
+		public boolean hasFired()
+		{
+			return fireCount > 0L;
+		}
+
+		public long getFireCount()
+		{
+			return fireCount;
+		}
+
+		/**
+		 * Returns whether the timer will still fire
+		 */
+		public boolean isPending()
+		{
+			return period == 0L ? heapIndex >= 0 : !cancelled;
+		}
+
+		public boolean isPeriodic()
+		{
+			return period != 0L;
+		}
+
+		/**
+		 * Stops the timer from firing again, can be invoked from its own callback
+		 */
+		public void cancel()
+		{
+			scheduler.cancel(this);
+		}
+	}
+}
@@ -0,0 +1,200 @@
+package FTCEngine.Core;
+
+import com.qualcomm.hardware.lynx.LynxModule;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Caches hardware reads so that each registered reading is read from the device at most once per frame,
+ * no matter how many behaviors ask for it. When bulk read is enabled, the hubs are also switched to manual
+ * bulk caching so one hub transaction serves all of the supported reads (encoders, digital and analog inputs) in a frame.
+ */
+public class SensorCache extends OpModeBase.Helper
+{
+	public SensorCache(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	private int frame = 1; //Readings start at frame 0, so they are always read the first time
+	private boolean bulkRead;
+
+	private List<LynxModule> hubs;
+	private final ArrayList<Reading> readings = new ArrayList<>();
+
+	public boolean isBulkRead()
+	{
+		return bulkRead;
+	}
+
+	/**
+	 * Enables or disables the bulk read mode of the hubs, should be invoked in awake.
+	 * When enabled the hubs are switched to manual caching and cleared every frame, otherwise their modes are not changed
+	 */
+	public void setBulkRead(boolean bulkRead)
+	{
+		if (opMode.getPhase() != OpModePhase.INITIALIZE) throw new IllegalStateException("Bulk read can only be changed during initialization! Phase: " + opMode.getPhase());
+		this.bulkRead = bulkRead;
+	}
+
+	/**
+	 * Creates a cached reading of reader, should be invoked in awake
+	 */
+	public Reading register(Reader reader)
+	{
+		if (opMode.getPhase() != OpModePhase.INITIALIZE) throw new IllegalStateException("Readings can only be registered during initialization! Phase: " + opMode.getPhase());
+
+		Reading reading = new Reading(this, reader, readings.size());
+		readings.add(reading);
+
+		opMode.recorder.onRegister(reading);
+
+		return reading;
+	}
+
+	int getReadingCount()
+	{
+		return readings.size();
+	}
+
+	Reading getReading(int index)
+	{
+		return readings.get(index);
+	}
+
+	/**
+	 * Makes every reading read from its device again the next time it is accessed
+	 */
+	public void invalidate()
+	{
+		frame++;
+		if (hubs == null) return;
+
+		for (int i = 0; i < hubs.size(); i++) hubs.get(i).clearBulkCache();
+	}
+
+	@Override
+	public void afterInit()
+	{
+		super.afterInit();
+		if (!bulkRead || opMode.hardwareMap == null) return; //Leaves the modes set by the behaviors alone, or running without hardware
+
+		hubs = opMode.hardwareMap.getAll(LynxModule.class);
+		for (LynxModule hub : hubs) hub.setBulkCachingMode(LynxModule.BulkCachingMode.MANUAL);
+	}
+
+	@Override
+	public void initLoop()
+	{
+		super.initLoop();
+		invalidate();
+	}
+
+	@Override
+	public void beforeStart()
+	{
+		super.beforeStart();
+		invalidate();
+	}
+
+	@Override
+	public void beforeUpdate()
+	{
+		super.beforeUpdate();
+		invalidate();
+	}
+
+	@Override
+	public void beforeStop()
+	{
+		super.beforeStop();
+		invalidate();
+	}
+
+	/**
+	 * Reads a value from a device, for example an encoder position or an IMU heading
+	 */
+	public interface Reader
+	{
+		double read();
+	}
+
+	/**
+	 * A value read from a device that is cached for the rest of the frame.
+	 * Behaviors should get the value from here instead of reading the device directly
+	 */
+	public static final class Reading
+	{
+		private Reading(SensorCache cache, Reader reader, int index)
+		{
+			this.cache = cache;
+			this.reader = reader;
+			this.index = index;
+		}
+
+		private final SensorCache cache;
+		private final Reader reader;
+
+		final int index; //In the order the readings were registered
+
+		private double value;
+		private volatile int frame; //Written after value, so a thread that sees the frame also sees its value
+
+		/**
+		 * Returns the value of this frame, only reads from the device on the first invocation of a frame.
+		 * Behaviors updating in parallel can share a reading: only one of them reads the device, the others wait for its value
+		 */
+		public double get()
+		{
+			int current = cache.frame;
+			if (frame == current) return value;
+
+			synchronized (this)
+			{
+				if (frame != current)
+				{
+					value = reader.read();
+					frame = current;
+				}
+
+				return value;
+			}
+		}
+
+		/**
+		 * Returns the value last read without reading the device
+		 */
+		public double getLast()
+		{
+			return value;
+		}
+
+		/**
+		 * Returns whether the device was read (or the value was preloaded) in the current frame
+		 */
+		boolean isCurrent()
+		{
+			return frame == cache.frame;
+		}
+
+		/**
+		 * Sets the value of the next frame so the device is not read, used by the Recorder to replay values.
+		 * Has to be invoked before the cache is invalidated for the next frame
+		 */
+		void preload(double value)
+		{
+			this.value = value;
+			frame = cache.frame + 1;
+		}
+
+		/**
+		 * Sets the value of the current frame so the device is not read, used by the Recorder to replay the values read in awake
+		 */
+		void preloadCurrent(double value)
+		{
+			this.value = value;
+			frame = cache.frame;
+		}
+	}
+}
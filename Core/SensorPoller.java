@@ -0,0 +1,246 @@
+package FTCEngine.Core;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Reads slow devices (IMUs, I2C color/distance sensors, etc.) on dedicated background threads, each at its own rate.
+ * The newest sample is published to a lock-free Mailbox, so behaviors can read it in update without ever waiting for the device.
+ * NOTE: A polled device should not be accessed from the main thread at the same time
+ */
+public class SensorPoller extends OpModeBase.Helper
+{
+	public SensorPoller(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	/**
+	 * How long stop waits in milliseconds for the poll threads to finish the read they are in
+	 */
+	public static final long StopTimeout = 500L;
+
+	private final ArrayList<PollThread> threads = new ArrayList<>();
+
+	/**
+	 * Creates a background thread that invokes reader rate times per second, should be invoked in awake.
+	 * The thread starts after initialization and stops when the opMode stops.
+	 *
+	 * @param name Used to name the thread and to report errors
+	 */
+	public Mailbox register(String name, SensorCache.Reader reader, float rate)
+	{
+		if (opMode.getPhase() != OpModePhase.INITIALIZE) throw new IllegalStateException("Polls can only be registered during initialization! Phase: " + opMode.getPhase());
+		if (rate <= 0f) throw new IllegalArgumentException("rate must be a positive number!");
+
+		Mailbox mailbox = new Mailbox();
+		threads.add(new PollThread(name, reader, (long)(1E9 / rate), mailbox));
+
+		return mailbox;
+	}
+
+	@Override
+	public void afterInit()
+	{
+		super.afterInit();
+		for (PollThread thread : threads) thread.start();
+	}
+
+	@Override
+	public void initLoop()
+	{
+		super.initLoop();
+		checkErrors();
+	}
+
+	@Override
+	public void beforeUpdate()
+	{
+		super.beforeUpdate();
+		checkErrors();
+	}
+
+	/**
+	 * Rethrows on the opMode thread anything a poll thread threw, which stopped that thread
+	 */
+	private void checkErrors()
+	{
+		for (int i = 0; i < threads.size(); i++)
+		{
+			PollThread thread = threads.get(i);
+			if (thread.error != null) throw new IllegalStateException("Exception while polling " + thread.getName(), thread.error);
+		}
+	}
+
+	/**
+	 * Stops the poll threads and waits (up to StopTimeout in total) for the reads they are in to finish,
+	 * so no device is read after the opMode stopped
+	 */
+	@Override
+	public void afterStop()
+	{
+		super.afterStop();
+
+		for (PollThread thread : threads) thread.running = false;
+		for (PollThread thread : threads) LockSupport.unpark(thread);
+
+		long deadline = System.nanoTime() + StopTimeout * 1000000L;
+
+		try
+		{
+			for (PollThread thread : threads)
+			{
+				long remaining = (deadline - System.nanoTime()) / 1000000L;
+				if (remaining > 0L) thread.join(remaining);
+			}
+		}
+		catch (InterruptedException exception)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		threads.clear();
+	}
+
+	/**
+	 * Holds the newest sample of a polled device.
+	 * Only the poll thread writes, and readers never block; if a read overlaps with a write it simply retries.
+	 */
+	public static final class Mailbox
+	{
+		private Mailbox()
+		{
+		}
+
+		//Odd while a sample is being written
+		private volatile int sequence;
+
+		private volatile double value;
+		private volatile long timestamp;
+
+		private void publish(double value, long timestamp)
+		{
+			int current = sequence;
+			sequence = current + 1;
+
+			this.value = value;
+			this.timestamp = timestamp;
+
+			sequence = current + 2;
+		}
+
+		/**
+		 * Returns whether the device has been read at least once
+		 */
+		public boolean hasValue()
+		{
+			return sequence >= 2;
+		}
+
+		/**
+		 * Returns the newest value
+		 */
+		public double getValue()
+		{
+			return value;
+		}
+
+		/**
+		 * Returns the System.nanoTime at which the newest value was read
+		 */
+		public long getTimestamp()
+		{
+			return timestamp;
+		}
+
+		/**
+		 * Copies the newest value and its matching timestamp into sample
+		 */
+		public void read(Sample sample)
+		{
+			while (true)
+			{
+				int before = sequence;
+
+				double value = this.value;
+				long timestamp = this.timestamp;
+
+				if ((before & 1) == 0 && sequence == before)
+				{
+					sample.value = value;
+					sample.timestamp = timestamp;
+
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * A value and the System.nanoTime it was read at, owned by the reader so reading a Mailbox does not allocate
+	 */
+	public static final class Sample
+	{
+		public double value;
+		public long timestamp;
+
+		/**
+		 * Returns how old this sample is in seconds
+		 */
+		public float getAge()
+		{
+			return (float)((System.nanoTime() - timestamp) / 1E9);
+		}
+	}
+
+	private static class PollThread extends Thread
+	{
+		public PollThread(String name, SensorCache.Reader reader, long period, Mailbox mailbox)
+		{
+			super("SensorPoller-" + name);
+			setDaemon(true);
+
+			this.reader = reader;
+			this.period = period;
+			this.mailbox = mailbox;
+		}
+
+		private final SensorCache.Reader reader;
+		private final long period;
+		private final Mailbox mailbox;
+
+		public volatile boolean running = true;
+		public volatile Throwable error;
+
+		@Override
+		public void run()
+		{
+			long next = System.nanoTime();
+
+			while (running)
+			{
+				try
+				{
+					double value = reader.read();
+					mailbox.publish(value, System.nanoTime());
+				}
+				catch (Throwable throwable)
+				{
+					error = throwable; //Including errors, which would otherwise end the thread without anyone noticing
+					return;
+				}
+
+				next += period;
+				long remaining = next - System.nanoTime();
+
+				if (remaining <= 0L) next = System.nanoTime(); //Fell behind, do not try to catch up
+
+				while (running && remaining > 0L)
+				{
+					LockSupport.parkNanos(remaining); //Can return early, so keep parking until the time is up
+					remaining = next - System.nanoTime();
+				}
+			}
+		}
+	}
+}
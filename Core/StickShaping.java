@@ -0,0 +1,188 @@
+package FTCEngine.Core;
+
+import FTCEngine.Delegates.Func;
+import FTCEngine.Math.Mathf;
+
+/**
+ * The shaping applied by Input to one joystick before anything reads it, get it with Input.getShaping.
+ * The stages run once per frame in order: radial deadzone, axial deadzone, response curve and slew rate limit.
+ * The response curve is sampled into a lookup table when it is set, so shaping never evaluates the curve itself.
+ * Everything is disabled by default, so the joystick is read unchanged. Should be configured in awake.
+ */
+public final class StickShaping
+{
+	StickShaping()
+	{
+	}
+
+	/**
+	 * The number of intervals the response curve is sampled into, values between the samples are interpolated
+	 */
+	public static final int CurveResolution = 256;
+
+	private float radialDeadzone;
+	private float axialDeadzone;
+	private float slewRate;
+
+	private float[] curve; //Samples of the curve from 0 to 1, null for a linear response
+
+	//The result of the last shape
+	float x;
+	float y;
+
+	private long lastTime;
+	private boolean shaped;
+
+	public float getRadialDeadzone()
+	{
+		return radialDeadzone;
+	}
+
+	/**
+	 * Sets the distance from the center below which the joystick reads as centered, the rest of the range is rescaled to start from 0
+	 */
+	public void setRadialDeadzone(float deadzone)
+	{
+		radialDeadzone = checkDeadzone(deadzone);
+	}
+
+	public float getAxialDeadzone()
+	{
+		return axialDeadzone;
+	}
+
+	/**
+	 * Sets the value below which each axis reads as 0 on its own, the rest of the range is rescaled to start from 0
+	 */
+	public void setAxialDeadzone(float deadzone)
+	{
+		axialDeadzone = checkDeadzone(deadzone);
+	}
+
+	private static float checkDeadzone(float deadzone)
+	{
+		if (deadzone < 0f || deadzone >= 1f) throw new IllegalArgumentException("deadzone must be between 0 (inclusive) and 1 (exclusive)!");
+		return deadzone;
+	}
+
+	public float getSlewRate()
+	{
+		return slewRate;
+	}
+
+	/**
+	 * Sets how much each axis can change per second, or 0 (default) for no limit
+	 */
+	public void setSlewRate(float slewRate)
+	{
+		if (slewRate < 0f) throw new IllegalArgumentException("slewRate cannot be negative!");
+		this.slewRate = slewRate;
+	}
+
+	/**
+	 * Sets the response curve to the absolute value of each axis raised to exponent, for example 2 or 3 for finer control near the center
+	 */
+	public void setExponent(final float exponent)
+	{
+		if (exponent <= 0f) throw new IllegalArgumentException("exponent must be a positive number!");
+
+		setCurve(new Func<Float, Float>()
+		{
+			@Override
+			public Float apply(Float input)
+			{
+				return (float)Math.pow(input, exponent);
+			}
+		});
+	}
+
+	/**
+	 * Sets the response curve applied to the absolute value of each axis, which maps 0 to 1 into 0 to 1; the sign of the axis is kept.
+	 * Null resets to a linear response
+	 */
+	public void setCurve(Func<Float, Float> curve)
+	{
+		if (curve == null)
+		{
+			this.curve = null;
+			return;
+		}
+
+		float[] samples = new float[CurveResolution + 1];
+		for (int i = 0; i <= CurveResolution; i++) samples[i] = Mathf.clamp01(curve.apply((float)i / CurveResolution));
+
+		this.curve = samples;
+	}
+
+	/**
+	 * Shapes the raw axes of the joystick into x and y
+	 */
+	void shape(float rawX, float rawY, long time)
+	{
+		float deltaTime = shaped ? (float)((time - lastTime) / 1E9) : 0f;
+
+		float shapedX = rawX;
+		float shapedY = rawY;
+
+		if (radialDeadzone > 0f)
+		{
+			float magnitude = (float)Math.sqrt((double)shapedX * shapedX + (double)shapedY * shapedY);
+
+			if (magnitude <= radialDeadzone)
+			{
+				shapedX = 0f;
+				shapedY = 0f;
+			}
+			else
+			{
+				float scale = Math.min((magnitude - radialDeadzone) / (1f - radialDeadzone), 1f) / magnitude;
+
+				shapedX *= scale;
+				shapedY *= scale;
+			}
+		}
+
+		if (axialDeadzone > 0f)
+		{
+			shapedX = applyAxialDeadzone(shapedX);
+			shapedY = applyAxialDeadzone(shapedY);
+		}
+
+		if (curve != null)
+		{
+			shapedX = applyCurve(shapedX);
+			shapedY = applyCurve(shapedY);
+		}
+
+		if (slewRate > 0f && shaped)
+		{
+			float maxChange = slewRate * deltaTime;
+
+			shapedX = Mathf.clamp(shapedX, x - maxChange, x + maxChange);
+			shapedY = Mathf.clamp(shapedY, y - maxChange, y + maxChange);
+		}
+
+		x = shapedX;
+		y = shapedY;
+
+		lastTime = time;
+		shaped = true;
+	}
+
+	private float applyAxialDeadzone(float value)
+	{
+		float magnitude = Math.abs(value);
+		if (magnitude <= axialDeadzone) return 0f;
+
+		return Math.copySign(Math.min((magnitude - axialDeadzone) / (1f - axialDeadzone), 1f), value);
+	}
+
+	private float applyCurve(float value)
+	{
+		float position = Math.min(Math.abs(value), 1f) * CurveResolution;
+		int index = Math.min((int)position, CurveResolution - 1);
+
+		float sample = Mathf.lerpUnclamped(curve[index], curve[index + 1], position - index);
+		return Math.copySign(sample, value);
+	}
+}
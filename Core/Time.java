@@ -1,5 +1,12 @@
 package FTCEngine.Core;
 
+import FTCEngine.Helpers.RollingWindow;
+
+/**
+ * Measures time since init and between loops. getTime and getDeltaTime are floats for convenience;
+ * the precise accessors keep full precision however long the opMode runs.
+ * It also keeps statistics of the recent frame times (loop rate, percentiles and jitter) without allocating.
+ */
 public class Time extends OpModeBase.Helper
 {
 	public Time(OpModeBase main)
@@ -7,9 +14,24 @@ public class Time extends OpModeBase.Helper
 		super(main);
 	}
 
+	/**
+	 * The number of recent frame times the loop statistics are computed from
+	 */
+	public static final int WindowLength = 128;
+
+	private Clock clock = systemClock;
+
 	private long initialTime;
 	private long previousTime;
+
+	private long deltaNanos;
 	private float deltaTime;
+	private long frameCount;
+
+	private float smoothing = 0.1f;
+	private double smoothDeltaTime;
+
+	private final RollingWindow frameTimes = new RollingWindow(WindowLength);
 
 	/**
 	 * @return the delta time from the previous frame to this frame in seconds
@@ -19,12 +41,122 @@ public class Time extends OpModeBase.Helper
 		return deltaTime;
 	}
 
+	/**
+	 * @return the delta time from the previous frame to this frame in nanoseconds
+	 */
+	public long getDeltaTimeNanos()
+	{
+		return deltaNanos;
+	}
+
+	/**
+	 * @return the delta time from the previous frame to this frame in seconds, without the rounding of getDeltaTime
+	 */
+	public double getPreciseDeltaTime()
+	{
+		return deltaNanos / 1E9;
+	}
+
 	/**
 	 * @return time in seconds
 	 */
 	public float getTime()
 	{
-		return nanoToSec(System.nanoTime() - initialTime);
+		return nanoToSec(clock.nanoTime() - initialTime);
+	}
+
+	/**
+	 * @return time since init in nanoseconds
+	 */
+	public long getTimeNanos()
+	{
+		return clock.nanoTime() - initialTime;
+	}
+
+	/**
+	 * @return time since init in seconds, without losing precision as the time grows like getTime does
+	 */
+	public double getPreciseTime()
+	{
+		return (clock.nanoTime() - initialTime) / 1E9;
+	}
+
+	/**
+	 * Returns the number of loops since start, including the current one
+	 */
+	public long getFrameCount()
+	{
+		return frameCount;
+	}
+
+	/**
+	 * Returns the exponential moving average of the delta time in seconds, which is steadier than getDeltaTime
+	 */
+	public float getSmoothDeltaTime()
+	{
+		return (float)smoothDeltaTime;
+	}
+
+	public float getSmoothing()
+	{
+		return smoothing;
+	}
+
+	/**
+	 * Sets how much each new delta time moves the smoothed delta time, between 0 (exclusive) and 1 (no smoothing). Default is 0.1
+	 */
+	public void setSmoothing(float smoothing)
+	{
+		if (smoothing <= 0f || smoothing > 1f) throw new IllegalArgumentException("smoothing must be between 0 (exclusive) and 1!");
+		this.smoothing = smoothing;
+	}
+
+	/**
+	 * Returns the mean number of loops per second over the recent frames, 0 if there are none
+	 */
+	public float getLoopRate()
+	{
+		return frameTimes.getSum() == 0L ? 0f : (float)(frameTimes.getCount() * 1E9 / frameTimes.getSum());
+	}
+
+	/**
+	 * Returns the frame time in seconds below which percentile (between 0 and 1) of the recent frame times fall,
+	 * for example 0.5 for the median or 0.99 for the slow frames
+	 */
+	public float getFrameTimePercentile(float percentile)
+	{
+		return nanoToSec(frameTimes.getPercentile(percentile));
+	}
+
+	/**
+	 * Returns the largest difference in seconds between a recent frame time and their mean
+	 */
+	public float getMaxJitter()
+	{
+		return (float)(frameTimes.getMaxDeviation() / 1E9);
+	}
+
+	/**
+	 * Clears the recent frame times the loop statistics are computed from
+	 */
+	public void resetStatistics()
+	{
+		frameTimes.clear();
+	}
+
+	public Clock getClock()
+	{
+		return clock;
+	}
+
+	/**
+	 * Replaces the source of time, by default it is System.nanoTime.
+	 * Should be set before init; used to run the opMode in simulated time.
+	 */
+	public void setClock(Clock clock)
+	{
+		if (clock == null) throw new IllegalArgumentException("clock cannot be null!");
+		this.clock = clock;
 	}
 
 	private static float nanoToSec(long nano)
@@ -36,25 +168,52 @@ public class Time extends OpModeBase.Helper
 	public void beforeInit()
 	{
 		super.beforeInit();
-		initialTime = System.nanoTime();
+		initialTime = clock.nanoTime();
 	}
 
 	@Override
 	public void beforeStart()
 	{
 		super.beforeStart();
-		previousTime = System.nanoTime();
+		previousTime = clock.nanoTime();
+
+		frameCount = 0L;
+		smoothDeltaTime = 0d;
+
+		resetStatistics();
 	}
 
 	@Override
 	public void beforeUpdate()
 	{
 		super.beforeUpdate();
-		long time = System.nanoTime();
+		long time = clock.nanoTime();
 
-		deltaTime = nanoToSec(time - previousTime);
-		deltaTime = Math.max(deltaTime, 0f);
+		deltaNanos = Math.max(time - previousTime, 0L);
+		deltaTime = nanoToSec(deltaNanos);
 
 		previousTime = time;
+
+		if (frameCount++ == 0L) smoothDeltaTime = deltaNanos / 1E9;
+		else smoothDeltaTime += (deltaNanos / 1E9 - smoothDeltaTime) * smoothing;
+
+		frameTimes.add(deltaNanos);
+	}
+
+	/**
+	 * A source of time in nanoseconds, only the difference between two values is meaningful
+	 */
+	public interface Clock
+	{
+		long nanoTime();
 	}
+
+	private static final Clock systemClock = new Clock()
+	{
+		@Override
+		public long nanoTime()
+		{
+			return System.nanoTime();
+		}
+	};
 }
\ No newline at end of file
@@ -0,0 +1,167 @@
+package FTCEngine.Core;
+
+/**
+ * Checks every frame against a time budget and records which Behavior or Helper caused the frames that went over it.
+ * When overruns persist, it degrades the opMode: behaviors marked as low priority (see Behavior.isLowPriority)
+ * are updated less and less often, and eventually skipped, until the frames are back under budget for a while.
+ * Disabled until a budget is set with setFrameBudget.
+ */
+public class Watchdog extends OpModeBase.Helper
+{
+	public Watchdog(OpModeBase opMode)
+	{
+		super(opMode);
+	}
+
+	/**
+	 * The highest degradation level. Low priority behaviors are updated half as often for each level below this,
+	 * and are not updated at all at this level.
+	 */
+	public static final int MaxDegradation = 4;
+
+	private long frameBudget;
+	private int degradeThreshold = 5;
+	private int recoverThreshold = 100;
+
+	private int degradation;
+	private int recentOverruns; //Since the last level change or recovery
+	private int consecutiveUnderruns;
+
+	private long overrunCount;
+	private long lastOverrunDuration;
+	private Profiler.Sample lastCulprit;
+
+	/**
+	 * Returns the frame budget in seconds, 0 if disabled
+	 */
+	public float getFrameBudget()
+	{
+		return (float)(frameBudget / 1E9);
+	}
+
+	/**
+	 * Sets the longest a loop should take in seconds, or 0 to disable the watchdog
+	 */
+	public void setFrameBudget(float seconds)
+	{
+		if (seconds < 0f) throw new IllegalArgumentException("seconds cannot be negative!");
+
+		frameBudget = (long)(seconds * 1E9);
+		opMode.profiler.timingRequired = frameBudget > 0L;
+
+		if (frameBudget == 0L) degradation = 0;
+	}
+
+	public int getDegradeThreshold()
+	{
+		return degradeThreshold;
+	}
+
+	/**
+	 * Sets how many frames have to go over budget (without a recovery in between) to raise the degradation level, default is 5
+	 */
+	public void setDegradeThreshold(int frames)
+	{
+		if (frames <= 0) throw new IllegalArgumentException("frames must be a positive number!");
+		degradeThreshold = frames;
+	}
+
+	public int getRecoverThreshold()
+	{
+		return recoverThreshold;
+	}
+
+	/**
+	 * Sets how many frames in a row have to be under budget to lower the degradation level
+	 * and forget the previous overruns, default is 100
+	 */
+	public void setRecoverThreshold(int frames)
+	{
+		if (frames <= 0) throw new IllegalArgumentException("frames must be a positive number!");
+		recoverThreshold = frames;
+	}
+
+	/**
+	 * Returns the current degradation level, between 0 (none) and MaxDegradation (low priority behaviors skipped)
+	 */
+	public int getDegradation()
+	{
+		return degradation;
+	}
+
+	/**
+	 * Returns the total number of frames that went over budget
+	 */
+	public long getOverrunCount()
+	{
+		return overrunCount;
+	}
+
+	/**
+	 * Returns the duration in seconds of the last frame that went over budget
+	 */
+	public float getLastOverrunDuration()
+	{
+		return (float)(lastOverrunDuration / 1E9);
+	}
+
+	/**
+	 * Returns the section that took the longest during the last frame that went over budget, or null if none.
+	 * Use Profiler.Sample.getOverrunCount to see how often each section caused an overrun
+	 */
+	public Profiler.Sample getLastCulprit()
+	{
+		return lastCulprit;
+	}
+
+	/**
+	 * Invoked by OpModeBase at the very end of every loop
+	 */
+	void checkFrame()
+	{
+		if (frameBudget == 0L) return;
+
+		Profiler profiler = opMode.profiler;
+		long duration = profiler.getFrameSample().getLastMeasured();
+
+		if (duration <= frameBudget)
+		{
+			if (++consecutiveUnderruns < recoverThreshold) return;
+
+			if (degradation > 0) degradation--;
+
+			recentOverruns = 0;
+			consecutiveUnderruns = 0;
+
+			return;
+		}
+
+		overrunCount++;
+		lastOverrunDuration = duration;
+		consecutiveUnderruns = 0;
+
+		Profiler.Sample culprit = profiler.getFrameCulprit();
+
+		if (culprit != null)
+		{
+			culprit.addOverrun();
+			lastCulprit = culprit;
+		}
+
+		if (degradation < MaxDegradation && ++recentOverruns >= degradeThreshold)
+		{
+			degradation++;
+			recentOverruns = 0;
+		}
+	}
+
+	@Override
+	public void beforeStart()
+	{
+		super.beforeStart();
+
+		degradation = 0;
+		recentOverruns = 0;
+		consecutiveUnderruns = 0;
+	}
+}
@@ -1,60 +1,181 @@
 package FTCEngine;
 
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * Keeps the most recent log entries in a preallocated ring. Any thread can log: each entry claims the next sequence with an atomic counter,
+ * takes ownership of its slot once the entry a lap before is published, and publishes itself with its sequence number,
+ * so logging never locks and never allocates (apart from the arguments themselves).
+ * The arguments are kept as they were passed, and only formatted when the entries are read with getLogged or read:
+ * a mutable object shows its state at the time of reading, not at the time of logging.
+ */
 public class Debug
 {
-	private static final Object[] paramsArrayCache = new Object[4];
-	private static final LinkedBlockingQueue<String> logList = new LinkedBlockingQueue<String>();
+	private static final int MaxInlineArguments = 4;
 
-	private static int logListCapacity = 30;
+	private static final String lineSeparator = System.getProperty("line.separator");
+
+	private static volatile Ring ring = new Ring(30);
 
 	public static int getLogListCapacity()
 	{
-		return logListCapacity;
+		return ring.capacity;
 	}
 
+	/**
+	 * Changes how many entries are kept, the most recent ones are moved to the new ring.
+	 * Should not be invoked while other threads are logging
+	 */
 	public static void setLogListCapacity(int logListCapacity)
 	{
 		if (logListCapacity <= 0) throw new IllegalArgumentException("logListCapacity must be a positive number!");
 
-		Debug.logListCapacity = logListCapacity;
-		tryTrimLogList();
+		Ring oldRing = ring;
+		Ring newRing = new Ring(logListCapacity);
+
+		long head = oldRing.head.get();
+		long start = Math.max(head - Math.min(oldRing.capacity, logListCapacity), 0L);
+
+		Entry entry = new Entry();
+
+		for (long sequence = start; sequence < head; sequence++)
+		{
+			if (!oldRing.read(sequence, entry)) continue;
+
+			long newSequence = newRing.claim();
+			newRing.get(newSequence).copyFrom(entry);
+			newRing.publish(newSequence);
+		}
+
+		ring = newRing;
 	}
 
+	/**
+	 * Logs objects separated by spaces. The objects are kept and converted to strings when the entry is read
+	 */
 	public static void log(Object... objects)
 	{
-		logInternal(objects, objects.length);
+		int count = objects.length; //Read before claiming, a null array must not leave the slot claimed
+
+		Ring current = ring;
+		long sequence = current.claim();
+
+		try
+		{
+			Entry entry = current.begin(sequence, Level.INFO, null, null);
+
+			if (count <= MaxInlineArguments) System.arraycopy(objects, 0, entry.arguments, 0, count);
+			else entry.overflow = objects; //The varargs array belongs to this invocation, so it can be kept
+
+			entry.argumentCount = count;
+		}
+		finally
+		{
+			current.publish(sequence);
+		}
 	}
 
 	public static void log(Object object0)
 	{
-		paramsArrayCache[0] = object0;
-		logInternal(paramsArrayCache, 1);
+		Ring current = ring;
+		long sequence = current.claim();
+		Entry entry = current.begin(sequence, Level.INFO, null, null);
+
+		entry.arguments[0] = object0;
+		entry.argumentCount = 1;
+
+		current.publish(sequence);
 	}
 
 	public static void log(Object object0, Object object1)
 	{
-		paramsArrayCache[0] = object0;
-		paramsArrayCache[1] = object1;
-		logInternal(paramsArrayCache, 2);
+		Ring current = ring;
+		long sequence = current.claim();
+		Entry entry = current.begin(sequence, Level.INFO, null, null);
+
+		entry.arguments[0] = object0;
+		entry.arguments[1] = object1;
+		entry.argumentCount = 2;
+
+		current.publish(sequence);
 	}
 
 	public static void log(Object object0, Object object1, Object object2)
 	{
-		paramsArrayCache[0] = object0;
-		paramsArrayCache[1] = object1;
-		paramsArrayCache[2] = object2;
-		logInternal(paramsArrayCache, 3);
+		Ring current = ring;
+		long sequence = current.claim();
+		Entry entry = current.begin(sequence, Level.INFO, null, null);
+
+		entry.arguments[0] = object0;
+		entry.arguments[1] = object1;
+		entry.arguments[2] = object2;
+		entry.argumentCount = 3;
+
+		current.publish(sequence);
 	}
 
 	public static void log(Object object0, Object object1, Object object2, Object object3)
 	{
-		paramsArrayCache[0] = object0;
-		paramsArrayCache[1] = object1;
-		paramsArrayCache[2] = object2;
-		paramsArrayCache[3] = object3;
-		logInternal(paramsArrayCache, 4);
+		Ring current = ring;
+		long sequence = current.claim();
+		Entry entry = current.begin(sequence, Level.INFO, null, null);
+
+		entry.arguments[0] = object0;
+		entry.arguments[1] = object1;
+		entry.arguments[2] = object2;
+		entry.arguments[3] = object3;
+		entry.argumentCount = 4;
+
+		current.publish(sequence);
+	}
+
+	/**
+	 * Logs message with a level and a tag (can be null), for example log(Level.WARNING, "Lift", "Stalled")
+	 */
+	public static void log(Level level, String tag, String message)
+	{
+		if (level == null) throw new IllegalArgumentException("level cannot be null!");
+
+		Ring current = ring;
+		long sequence = current.claim();
+
+		current.begin(sequence, level, tag, message);
+		current.publish(sequence);
+	}
+
+	/**
+	 * Logs message followed by value, without boxing value
+	 */
+	public static void log(Level level, String tag, String message, double value)
+	{
+		if (level == null) throw new IllegalArgumentException("level cannot be null!");
+
+		Ring current = ring;
+		long sequence = current.claim();
+		Entry entry = current.begin(sequence, level, tag, message);
+
+		entry.number = value;
+		entry.numberKind = Entry.KindDouble;
+
+		current.publish(sequence);
+	}
+
+	/**
+	 * Logs message followed by value, without boxing value
+	 */
+	public static void log(Level level, String tag, String message, long value)
+	{
+		if (level == null) throw new IllegalArgumentException("level cannot be null!");
+
+		Ring current = ring;
+		long sequence = current.claim();
+		Entry entry = current.begin(sequence, level, tag, message);
+
+		entry.number = value;
+		entry.numberKind = Entry.KindLong;
+
+		current.publish(sequence);
 	}
 
 	/**
@@ -62,50 +183,271 @@ public class Debug
 	 *
 	 * @param maxCount The line count of the returning string (or how many logs are we going to return)
 	 */
-	public static String getLogged(int maxCount)
+	public static String getLogged(final int maxCount)
 	{
 		if (maxCount <= 0) throw new IllegalArgumentException("maxCount must be a positive number");
 
-		StringBuilder builder = new StringBuilder();
-		int length = Math.min(maxCount, logList.size());
+		final StringBuilder builder = new StringBuilder();
 
-		int index = 0;
-
-		for (String string : logList)
+		read(new Sink()
 		{
-			builder.append(string);
+			private int count;
 
-			if (++index == length) break;
-			builder.append(System.getProperty("line.separator"));
-		}
+			@Override
+			public boolean accept(Entry entry)
+			{
+				if (count++ > 0) builder.append(lineSeparator);
+				entry.format(builder);
+
+				return count < maxCount;
+			}
+		});
 
 		return builder.toString();
 	}
 
 	/**
-	 * @param objects Logs objects in this array
-	 * @param length  will only process objects from index 0 to this value [inclusive, exclusive)
+	 * Passes every entry kept to sink, oldest first. Entries overwritten while reading are skipped
 	 */
-	private static void logInternal(Object[] objects, int length)
+	public static void read(Sink sink)
 	{
-		for (int i = 0; i < length; i++)
+		Ring current = ring;
+		Entry entry = new Entry();
+
+		long head = current.head.get();
+
+		for (long sequence = Math.max(head - current.capacity, 0L); sequence < head; sequence++)
 		{
-			logList.add(toString(objects[i]));
-			tryTrimLogList();
+			if (current.read(sequence, entry) && !sink.accept(entry)) return;
 		}
 	}
 
-	private static String toString(Object target)
+	public enum Level
 	{
-		//NOTE: This implementation might change
-		return target.toString();
+		DEBUG,
+		INFO,
+		WARNING,
+		ERROR
+	}
+
+	/**
+	 * Receives the entries read by Debug.read
+	 */
+	public interface Sink
+	{
+		/**
+		 * The entry is only valid until this method returns
+		 *
+		 * @return whether to continue reading
+		 */
+		boolean accept(Entry entry);
+	}
+
+	/**
+	 * A log entry as it was logged, formatted only when format or toString is invoked
+	 */
+	public static final class Entry
+	{
+		private Entry()
+		{
+		}
+
+		private static final byte KindNone = 0;
+		private static final byte KindDouble = 1;
+		private static final byte KindLong = 2;
+
+		private long time;
+		private Level level;
+		private String tag;
+		private String message;
+
+		private final Object[] arguments = new Object[MaxInlineArguments];
+		private Object[] overflow;
+		private int argumentCount;
+
+		private double number;
+		private byte numberKind;
+
+		/**
+		 * Returns the System.nanoTime at which the entry was logged
+		 */
+		public long getTime()
+		{
+			return time;
+		}
+
+		public Level getLevel()
+		{
+			return level;
+		}
+
+		/**
+		 * Returns the tag, null for entries logged without one
+		 */
+		public String getTag()
+		{
+			return tag;
+		}
+
+		public int getArgumentCount()
+		{
+			return argumentCount;
+		}
+
+		public Object getArgument(int index)
+		{
+			if (index < 0 || index >= argumentCount) throw new IndexOutOfBoundsException("index " + index + " out of " + argumentCount);
+			return overflow == null ? arguments[index] : overflow[index];
+		}
+
+		/**
+		 * Appends the entry as one line: the tag, the message, the number and then the arguments separated by spaces
+		 */
+		public void format(StringBuilder builder)
+		{
+			if (tag != null) builder.append(tag).append(": ");
+			if (message != null) builder.append(message);
+
+			if (numberKind != KindNone)
+			{
+				if (message != null) builder.append(' ');
+
+				if (numberKind == KindLong) builder.append((long)number);
+				else builder.append(number);
+			}
+
+			for (int i = 0; i < argumentCount; i++)
+			{
+				if (i > 0 || message != null || numberKind != KindNone) builder.append(' ');
+				builder.append(getArgument(i));
+			}
+		}
+
+		private void clear()
+		{
+			for (int i = 0; i < MaxInlineArguments; i++) arguments[i] = null;
+
+			overflow = null;
+			argumentCount = 0;
+			numberKind = KindNone;
+		}
+
+		private void copyFrom(Entry other)
+		{
+			time = other.time;
+			level = other.level;
+			tag = other.tag;
+			message = other.message;
+
+			System.arraycopy(other.arguments, 0, arguments, 0, MaxInlineArguments);
+			overflow = other.overflow;
+			argumentCount = other.argumentCount;
+
+			number = other.number;
+			numberKind = other.numberKind;
+		}
+
+		@Override
+		public String toString()
+		{
+			StringBuilder builder = new StringBuilder();
+			format(builder);
+
+			return builder.toString();
+		}
 	}
 
 	/**
-	 * Trim log list to correct size if needed
+	 * The slots of the entries with the state of each one in an atomic array. A slot holds the sequence of the entry published in it,
+	 * or Writing/Reading while a thread owns it. Threads take ownership with a compare and set and give it back by setting the sequence,
+	 * so the fields of an entry are only ever accessed by the owner and are visible to whoever owns the slot next.
 	 */
-	private static void tryTrimLogList()
+	private static final class Ring
 	{
-		while (logList.size() > getLogListCapacity()) logList.remove();
+		public Ring(int capacity)
+		{
+			this.capacity = capacity;
+
+			slots = new Entry[capacity];
+			states = new AtomicLongArray(capacity);
+
+			for (int i = 0; i < capacity; i++)
+			{
+				slots[i] = new Entry();
+				states.set(i, i - capacity); //As if the lap before the first one was published
+			}
+		}
+
+		private static final long Writing = Long.MIN_VALUE;
+		private static final long Reading = Long.MIN_VALUE + 1L;
+
+		public final int capacity;
+		public final AtomicLong head = new AtomicLong(); //The sequence of the next entry logged
+
+		private final Entry[] slots;
+		private final AtomicLongArray states;
+
+		/**
+		 * Claims the next sequence and takes ownership of its slot, waiting for the entry a lap before to be published (and not read).
+		 * The slot is cleared and has to be published with the returned sequence after it is written, even if writing fails:
+		 * an unpublished slot blocks every later claim of it
+		 */
+		public long claim()
+		{
+			long sequence = head.getAndIncrement();
+			int index = (int)(sequence % capacity);
+
+			while (!states.compareAndSet(index, sequence - capacity, Writing)) Thread.yield();
+
+			slots[index].clear();
+			return sequence;
+		}
+
+		/**
+		 * Returns the entry of a sequence claimed by the invoking thread
+		 */
+		public Entry get(long sequence)
+		{
+			return slots[(int)(sequence % capacity)];
+		}
+
+		public Entry begin(long sequence, Level level, String tag, String message)
+		{
+			Entry entry = get(sequence);
+
+			entry.time = System.nanoTime();
+			entry.level = level;
+			entry.tag = tag;
+			entry.message = message;
+
+			return entry;
+		}
+
+		public void publish(long sequence)
+		{
+			states.set((int)(sequence % capacity), sequence);
+		}
+
+		/**
+		 * Copies the entry with sequence into result, returns false if it is not published or was already overwritten
+		 */
+		public boolean read(long sequence, Entry result)
+		{
+			int index = (int)(sequence % capacity);
+
+			while (true)
+			{
+				long state = states.get(index);
+
+				if (state == Reading) Thread.yield(); //Another reader is copying the same entry
+				else if (state != sequence) return false;
+				else if (states.compareAndSet(index, sequence, Reading)) break;
+			}
+
+			result.copyFrom(slots[index]);
+			states.set(index, sequence);
+
+			return true;
+		}
 	}
 }
@@ -0,0 +1,111 @@
+package FTCEngine.Helpers;
+
+import java.lang.reflect.Method;
+
+/**
+ * Reads the number of bytes allocated by the current thread, where the runtime exposes it.
+ * Uses com.sun.management.ThreadMXBean on desktop JVMs and android.os.Debug on Android, both through reflection
+ * so the engine compiles on either. Reading the counter allocates a little by itself, which is measured once and
+ * subtracted by getOverhead users.
+ */
+public class AllocationCounter
+{
+	private static final Object target;
+	private static final Method method;
+	private static final long overhead;
+
+	static
+	{
+		Object foundTarget = null;
+		Method foundMethod = null;
+
+		try
+		{
+			//Desktop JVM (JDK 14+)
+			Class<?> factory = Class.forName("java.lang.management.ManagementFactory");
+			Object bean = factory.getMethod("getThreadMXBean").invoke(null);
+
+			Class<?> beanClass = Class.forName("com.sun.management.ThreadMXBean");
+			if (beanClass.isInstance(bean))
+			{
+				beanClass.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(bean, true);
+
+				foundTarget = bean;
+				foundMethod = beanClass.getMethod("getCurrentThreadAllocatedBytes");
+			}
+		}
+		catch (Exception | LinkageError ignored)
+		{
+		}
+
+		if (foundMethod == null)
+		{
+			try
+			{
+				//Android
+				Class<?> debug = Class.forName("android.os.Debug");
+				debug.getMethod("startAllocCounting").invoke(null);
+
+				foundMethod = debug.getMethod("getThreadAllocSize");
+			}
+			catch (Exception | LinkageError ignored)
+			{
+			}
+		}
+
+		target = foundTarget;
+		method = foundMethod;
+
+		overhead = measureOverhead();
+	}
+
+	/**
+	 * Returns whether the runtime exposes the number of allocated bytes per thread
+	 */
+	public static boolean isSupported()
+	{
+		return method != null;
+	}
+
+	/**
+	 * Returns the total number of bytes allocated by the current thread, or 0 if not supported.
+	 * Only the difference between two values is meaningful
+	 */
+	public static long getThreadAllocatedBytes()
+	{
+		if (method == null) return 0L;
+
+		try
+		{
+			return ((Number)method.invoke(target)).longValue();
+		}
+		catch (Exception exception)
+		{
+			return 0L;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes one invocation of getThreadAllocatedBytes allocates,
+	 * which should be subtracted from the difference between two invocations.
+	 * It is measured when the class loads, so once the JIT compiles the caller the actual cost can be lower
+	 */
+	public static long getOverhead()
+	{
+		return overhead;
+	}
+
+	private static long measureOverhead()
+	{
+		if (method == null) return 0L;
+		long min = Long.MAX_VALUE;
+
+		for (int i = 0; i < 16; i++)
+		{
+			long start = getThreadAllocatedBytes();
+			min = Math.min(min, getThreadAllocatedBytes() - start);
+		}
+
+		return Math.max(0L, min);
+	}
+}
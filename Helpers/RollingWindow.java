@@ -0,0 +1,117 @@
+package FTCEngine.Helpers;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the most recent values of a measurement (such as frame durations in nanoseconds) in a fixed ring,
+ * and computes statistics over them without allocating. Once the window is full each new value replaces the oldest one.
+ */
+public final class RollingWindow
+{
+	public RollingWindow(int length)
+	{
+		if (length <= 0) throw new IllegalArgumentException("length must be a positive number!");
+		values = new long[length];
+	}
+
+	private final long[] values;
+	private long[] sortCache; //Only allocated once a percentile is requested, most windows never need it
+
+	private int count;
+	private int nextIndex;
+	private long sum;
+
+	public void add(long value)
+	{
+		if (count == values.length) sum -= values[nextIndex];
+		else count++;
+
+		values[nextIndex] = value;
+		sum += value;
+
+		nextIndex = (nextIndex + 1) % values.length;
+	}
+
+	/**
+	 * Returns the number of values in the window, which is at most getLength
+	 */
+	public int getCount()
+	{
+		return count;
+	}
+
+	public int getLength()
+	{
+		return values.length;
+	}
+
+	public long getSum()
+	{
+		return sum;
+	}
+
+	/**
+	 * Returns the most recent value, 0 if there are none
+	 */
+	public long getLast()
+	{
+		if (count == 0) return 0L;
+		return values[(nextIndex + values.length - 1) % values.length];
+	}
+
+	public long getMin()
+	{
+		if (count == 0) return 0L;
+		long min = Long.MAX_VALUE;
+
+		for (int i = 0; i < count; i++) min = Math.min(min, values[i]);
+		return min;
+	}
+
+	public long getMax()
+	{
+		long max = 0L;
+
+		for (int i = 0; i < count; i++) max = Math.max(max, values[i]);
+		return max;
+	}
+
+	public double getMean()
+	{
+		return count == 0 ? 0d : (double)sum / count;
+	}
+
+	/**
+	 * Returns the value below which percentile (between 0 and 1) of the values fall, 0 if there are none
+	 */
+	public long getPercentile(float percentile)
+	{
+		if (count == 0) return 0L;
+		if (sortCache == null) sortCache = new long[values.length];
+
+		System.arraycopy(values, 0, sortCache, 0, count);
+		Arrays.sort(sortCache, 0, count);
+
+		int index = (int)Math.ceil(percentile * count) - 1;
+		return sortCache[Math.max(0, Math.min(count - 1, index))];
+	}
+
+	/**
+	 * Returns the largest difference between a value and the mean, 0 if there are none
+	 */
+	public double getMaxDeviation()
+	{
+		double mean = getMean();
+		double max = 0d;
+
+		for (int i = 0; i < count; i++) max = Math.max(max, Math.abs(values[i] - mean));
+		return max;
+	}
+
+	public void clear()
+	{
+		count = 0;
+		nextIndex = 0;
+		sum = 0L;
+	}
+}
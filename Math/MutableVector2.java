@@ -0,0 +1,67 @@
+package FTCEngine.Math;
+
+/**
+ * A vector2 whose values can be changed, used to receive results without allocating a new Vector2 every time.
+ * It should be owned by whoever created it and not be stored by the methods that write into it.
+ */
+public final class MutableVector2
+{
+	public MutableVector2()
+	{
+	}
+
+	public MutableVector2(float x, float y)
+	{
+		this.x = x;
+		this.y = y;
+	}
+
+	public float x;
+	public float y;
+
+	public MutableVector2 set(float x, float y)
+	{
+		this.x = x;
+		this.y = y;
+
+		return this;
+	}
+
+	public MutableVector2 set(Vector2 vector)
+	{
+		return set(vector.x, vector.y);
+	}
+
+	/**
+	 * Change the magnitude of this vector to one, without modifying its direction
+	 */
+	public MutableVector2 normalize()
+	{
+		float magnitude = getMagnitude();
+		return Mathf.almostEquals(magnitude, 0f) ? set(0f, 0f) : set(x / magnitude, y / magnitude);
+	}
+
+	public float getMagnitude()
+	{
+		return (float)Math.sqrt((double)x * x + (double)y * y);
+	}
+
+	public float getMagnitudeSquared()
+	{
+		return x * x + y * y;
+	}
+
+	/**
+	 * Returns an immutable copy of this vector
+	 */
+	public Vector2 toVector2()
+	{
+		return new Vector2(x, y);
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("(%.4f, %.4f)", x, y);
+	}
+}
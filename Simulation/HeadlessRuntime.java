@@ -0,0 +1,234 @@
+package FTCEngine.Simulation;
+
+import com.qualcomm.robotcore.hardware.Gamepad;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import java.io.File;
+
+import FTCEngine.Core.OpModeBase;
+import FTCEngine.Core.OpModePhase;
+import FTCEngine.Core.Time;
+import FTCEngine.Delegates.Action;
+
+/**
+ * Runs an OpModeBase outside of the FTC app, for example on a plain JVM for profiling or regression tests.
+ * It takes the place of the app: it provides the gamepads and telemetry, and invokes init, init_loop, start, loop and stop.
+ * By default time is simulated, so frames run as fast as possible while the opMode sees a steady frame rate;
+ * with setRealTime the runtime instead sleeps to hold the frame rate.
+ * <p>
+ * The runtime does not need the FTC SDK: Simulation/Sdk has stand-ins for the SDK classes the engine uses
+ * (OpMode, Gamepad, HardwareMap, Telemetry and a few hardware types). They end in .java.stub so the robot build
+ * ignores them; Simulation/Sdk/compile.sh compiles the engine together with them (see the README).
+ */
+public class HeadlessRuntime
+{
+	/**
+	 * @param hardwareMap The hardware the behaviors will find in awake, can be null if none of the behaviors use hardware
+	 */
+	public HeadlessRuntime(OpModeBase opMode, HardwareMap hardwareMap)
+	{
+		this.opMode = opMode;
+
+		gamepad1 = new Gamepad();
+		gamepad2 = new Gamepad();
+		telemetry = new HeadlessTelemetry();
+
+		opMode.gamepad1 = gamepad1;
+		opMode.gamepad2 = gamepad2;
+		opMode.hardwareMap = hardwareMap;
+
+		opMode.debug.setOutput(telemetry);
+		opMode.time.setClock(clock);
+	}
+
+	public final OpModeBase opMode;
+
+	/**
+	 * The state of these gamepads can be freely modified between frames to simulate the drivers
+	 */
+	public final Gamepad gamepad1;
+	public final Gamepad gamepad2;
+
+	public final HeadlessTelemetry telemetry;
+
+	private final SimulatedClock clock = new SimulatedClock();
+
+	private long framePeriod = (long)(1E9 / 100d);
+	private boolean realTime;
+	private long realOffset; //Added to System.nanoTime in real time, so the clock continues from the simulated time instead of jumping
+	private long frameCount;
+
+	public float getFrameRate()
+	{
+		return (float)(1E9 / framePeriod);
+	}
+
+	/**
+	 * Sets the number of frames per simulated second, default is 100
+	 */
+	public void setFrameRate(float frameRate)
+	{
+		if (frameRate <= 0f) throw new IllegalArgumentException("frameRate must be a positive number!");
+		framePeriod = (long)(1E9 / frameRate);
+	}
+
+	public boolean isRealTime()
+	{
+		return realTime;
+	}
+
+	/**
+	 * If true, the runtime waits between frames so that the frame rate is held in real time
+	 */
+	public void setRealTime(boolean realTime)
+	{
+		if (realTime && !this.realTime) realOffset = clock.time - System.nanoTime();
+		this.realTime = realTime;
+	}
+
+	/**
+	 * Returns the number of frames run (init_loop and loop) since init
+	 */
+	public long getFrameCount()
+	{
+		return frameCount;
+	}
+
+	public void init()
+	{
+		if (opMode.getPhase() != OpModePhase.INVALID) throw new IllegalStateException("The opMode is already running!");
+
+		frameCount = 0;
+		opMode.init();
+	}
+
+	/**
+	 * Runs frames of init_loop, invoking beforeFrame (if not null) before every frame
+	 */
+	public void initLoop(int frames, Action<HeadlessRuntime> beforeFrame)
+	{
+		for (int i = 0; i < frames; i++)
+		{
+			if (beforeFrame != null) beforeFrame.accept(this);
+
+			advance();
+			opMode.init_loop();
+		}
+	}
+
+	public void start()
+	{
+		opMode.start();
+	}
+
+	/**
+	 * Runs frames of loop, invoking beforeFrame (if not null) before every frame
+	 */
+	public void loop(int frames, Action<HeadlessRuntime> beforeFrame)
+	{
+		for (int i = 0; i < frames; i++)
+		{
+			if (beforeFrame != null) beforeFrame.accept(this);
+
+			advance();
+			opMode.loop();
+		}
+	}
+
+	/**
+	 * Runs loop for the number of seconds in simulated time
+	 */
+	public void loopFor(float seconds, Action<HeadlessRuntime> beforeFrame)
+	{
+		loop((int)Math.ceil(seconds * 1E9 / framePeriod), beforeFrame);
+	}
+
+	public void stop()
+	{
+		opMode.stop();
+	}
+
+	/**
+	 * Runs the entire opMode: init, initFrames of init_loop, start, loopFrames of loop and then stop
+	 */
+	public void run(int initFrames, int loopFrames, Action<HeadlessRuntime> beforeFrame)
+	{
+		init();
+		initLoop(initFrames, beforeFrame);
+		start();
+		loop(loopFrames, beforeFrame);
+		stop();
+	}
+
+	/**
+	 * Runs the entire opMode from a log made by Recorder.record, as fast as possible.
+	 * The gamepads, time and sensor readings all come from the log, so the opMode runs the same frames as when it was recorded
+	 */
+	public void replay(File file)
+	{
+		opMode.recorder.replay(file);
+		init();
+
+		while (opMode.recorder.getNextPhase() == OpModePhase.INIT_LOOP)
+		{
+			frameCount++;
+			opMode.init_loop();
+		}
+
+		if (opMode.recorder.getNextPhase() == OpModePhase.START)
+		{
+			start();
+
+			while (opMode.recorder.getNextPhase() == OpModePhase.LOOP)
+			{
+				frameCount++;
+				opMode.loop();
+			}
+		}
+
+		stop();
+	}
+
+	/**
+	 * Moves time forward by one frame
+	 */
+	private void advance()
+	{
+		frameCount++;
+
+		if (!realTime)
+		{
+			clock.time += framePeriod;
+			return;
+		}
+
+		long target = clock.time + framePeriod;
+		long remaining;
+
+		while ((remaining = target - (System.nanoTime() + realOffset)) > 0L)
+		{
+			try
+			{
+				Thread.sleep(remaining / 1000000L, (int)(remaining % 1000000L));
+			}
+			catch (InterruptedException exception)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+
+		clock.time = System.nanoTime() + realOffset;
+	}
+
+	private static class SimulatedClock implements Time.Clock
+	{
+		public long time = System.nanoTime();
+
+		@Override
+		public long nanoTime()
+		{
+			return time;
+		}
+	}
+}
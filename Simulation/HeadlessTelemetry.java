@@ -0,0 +1,75 @@
+package FTCEngine.Simulation;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import FTCEngine.Core.Debug;
+
+/**
+ * Stand-in for the telemetry of the FTC app when running headless.
+ * Keeps the lines currently displayed, and can optionally print them to the console on every update.
+ */
+public class HeadlessTelemetry implements Debug.Output
+{
+	private final LinkedHashMap<String, Object> data = new LinkedHashMap<>();
+	private final ArrayList<String> lines = new ArrayList<>();
+
+	private boolean echo;
+	private int updateCount;
+
+	public boolean isEcho()
+	{
+		return echo;
+	}
+
+	/**
+	 * If true, all of the lines will be printed to System.out on every update
+	 */
+	public void setEcho(boolean echo)
+	{
+		this.echo = echo;
+	}
+
+	/**
+	 * Returns the lines displayed as of the last update
+	 */
+	public synchronized List<String> getLines()
+	{
+		return new ArrayList<>(lines);
+	}
+
+	/**
+	 * Returns how many times the telemetry has been updated
+	 */
+	public int getUpdateCount()
+	{
+		return updateCount;
+	}
+
+	@Override
+	public synchronized void setData(String caption, Object value)
+	{
+		data.put(caption, value);
+	}
+
+	@Override
+	public synchronized void removeData(String caption)
+	{
+		data.remove(caption);
+	}
+
+	@Override
+	public synchronized void update()
+	{
+		lines.clear();
+		for (Map.Entry<String, Object> entry : data.entrySet()) lines.add(entry.getKey() + " : " + entry.getValue());
+
+		updateCount++;
+		if (!echo) return;
+
+		for (String line : lines) System.out.println(line);
+		System.out.println();
+	}
+}
@@ -0,0 +1,21 @@
+#!/bin/sh
+# Compiles the engine together with the SDK stand-ins, for running opModes headless on a plain JVM without the SDK jar.
+# The stand-ins end in .java.stub so the robot build, which compiles every .java file of the engine, never sees them.
+# Usage: sh Simulation/Sdk/compile.sh <output directory> [javac options]
+set -e
+
+engine=$(cd "$(dirname "$0")/../.." && pwd)
+out=${1:?"Usage: compile.sh <output directory> [javac options]"}
+shift
+
+sources=$(mktemp -d)
+trap 'rm -rf "$sources"' EXIT
+
+cd "$engine/Simulation/Sdk"
+for stub in $(find . -name '*.java.stub'); do
+	mkdir -p "$sources/$(dirname "$stub")"
+	cp "$stub" "$sources/${stub%.stub}"
+done
+
+mkdir -p "$out"
+javac -d "$out" "$@" $(find "$sources" "$engine" -name '*.java')
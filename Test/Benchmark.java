@@ -0,0 +1,106 @@
+package FTCEngine.Test;
+
+/**
+ * A minimal microbenchmark: warms up, then measures the average time of one operation over several rounds.
+ * Each case returns a value computed from its work so the JIT cannot remove it.
+ */
+public abstract class Benchmark
+{
+	public Benchmark(String name)
+	{
+		this.name = name;
+	}
+
+	public final String name;
+
+	public static final int WarmupRounds = 5;
+	public static final int MeasureRounds = 10;
+	public static final long RoundNanos = 200000000L; //200 milliseconds
+
+	/**
+	 * Anything written here is never read, it only exists to keep the results of the cases alive
+	 */
+	public static volatile long sink;
+
+	/**
+	 * Invoked once before the rounds, for anything that should not be measured
+	 */
+	protected void setup()
+	{
+	}
+
+	/**
+	 * Runs the operation iterations times and returns a value depending on all of the results
+	 */
+	protected abstract long run(int iterations);
+
+	/**
+	 * Runs the benchmark and returns the results
+	 */
+	public Result measure()
+	{
+		setup();
+
+		int iterations = calibrate();
+		for (int i = 0; i < WarmupRounds; i++) sink += run(iterations);
+
+		double best = Double.MAX_VALUE;
+		double total = 0d;
+
+		for (int i = 0; i < MeasureRounds; i++)
+		{
+			long start = System.nanoTime();
+			sink += run(iterations);
+
+			double nanosPerOp = (double)(System.nanoTime() - start) / iterations;
+
+			best = Math.min(best, nanosPerOp);
+			total += nanosPerOp;
+		}
+
+		return new Result(name, total / MeasureRounds, best);
+	}
+
+	/**
+	 * Finds roughly how many iterations fit in one round
+	 */
+	private int calibrate()
+	{
+		int iterations = 1;
+
+		while (true)
+		{
+			long start = System.nanoTime();
+			sink += run(iterations);
+
+			long elapsed = System.nanoTime() - start;
+			if (elapsed >= RoundNanos / 10 || iterations >= Integer.MAX_VALUE / 20) return (int)Math.max(1L, iterations * RoundNanos / Math.max(1L, elapsed));
+
+			iterations *= 2;
+		}
+	}
+
+	public static class Result
+	{
+		public Result(String name, double mean, double best)
+		{
+			this.name = name;
+			this.mean = mean;
+			this.best = best;
+		}
+
+		public final String name;
+
+		/**
+		 * Nanoseconds per operation
+		 */
+		public final double mean;
+		public final double best;
+
+		@Override
+		public String toString()
+		{
+			return String.format("%-40s %12.2f %12.2f", name, mean, best);
+		}
+	}
+}
@@ -0,0 +1,425 @@
+package FTCEngine.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import FTCEngine.Core.Auto.AutoBehavior;
+import FTCEngine.Core.Auto.ConfigOption;
+import FTCEngine.Core.Auto.Job;
+import FTCEngine.Core.Auto.JobSequence;
+import FTCEngine.Core.Behavior;
+import FTCEngine.Core.Input;
+import FTCEngine.Core.OpModeBase;
+import FTCEngine.Debug;
+import FTCEngine.Helpers.CollectionHelper;
+import FTCEngine.Math.Mathf;
+import FTCEngine.Math.Vector2;
+import FTCEngine.Math.Vector3;
+import FTCEngine.Simulation.HeadlessRuntime;
+
+/**
+ * Microbenchmarks of the engine hot paths. Run the main method and compare the output between engine versions,
+ * all times are in nanoseconds per operation.
+ */
+public class EngineBenchmarks
+{
+	public static void main(String[] args)
+	{
+		List<Benchmark> benchmarks = new ArrayList<>();
+
+		addMathBenchmarks(benchmarks);
+		addCollectionBenchmarks(benchmarks);
+		addInputBenchmarks(benchmarks);
+		addJobSequenceBenchmarks(benchmarks);
+		addDebugBenchmarks(benchmarks);
+
+		System.out.println(String.format("%-40s %12s %12s", "Benchmark", "Mean ns/op", "Best ns/op"));
+
+		for (Benchmark benchmark : benchmarks)
+		{
+			if (args.length > 0 && !benchmark.name.contains(args[0])) continue; //Filter by name
+			System.out.println(benchmark.measure());
+		}
+	}
+
+	private static final int VectorCount = 1024; //Power of two so indices can be masked
+
+	private static Vector2[] createVector2s()
+	{
+		Random random = new Random(42);
+		Vector2[] vectors = new Vector2[VectorCount];
+
+		for (int i = 0; i < vectors.length; i++) vectors[i] = new Vector2(random.nextFloat() * 2f - 1f, random.nextFloat() * 2f - 1f);
+		return vectors;
+	}
+
+	private static Vector3[] createVector3s()
+	{
+		Random random = new Random(42);
+		Vector3[] vectors = new Vector3[VectorCount];
+
+		for (int i = 0; i < vectors.length; i++) vectors[i] = new Vector3(random.nextFloat() * 2f - 1f, random.nextFloat() * 2f - 1f, random.nextFloat() * 2f - 1f);
+		return vectors;
+	}
+
+	private static void addMathBenchmarks(List<Benchmark> benchmarks)
+	{
+		final Vector2[] vector2s = createVector2s();
+		final Vector3[] vector3s = createVector3s();
+
+		benchmarks.add(new Benchmark("Vector2.add")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				Vector2 result = Vector2.zero;
+				for (int i = 0; i < iterations; i++) result = result.add(vector2s[i & (VectorCount - 1)]);
+				return Float.floatToIntBits(result.x);
+			}
+		});
+
+		benchmarks.add(new Benchmark("Vector2.normalize")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += Float.floatToIntBits(vector2s[i & (VectorCount - 1)].normalize().x);
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Vector2.rotate")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += Float.floatToIntBits(vector2s[i & (VectorCount - 1)].rotate(i).x);
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Vector2.signedAngle")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += Float.floatToIntBits(Vector2.signedAngle(vector2s[i & (VectorCount - 1)], vector2s[(i + 1) & (VectorCount - 1)]));
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Vector3.add")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				Vector3 result = Vector3.zero;
+				for (int i = 0; i < iterations; i++) result = result.add(vector3s[i & (VectorCount - 1)]);
+				return Float.floatToIntBits(result.x);
+			}
+		});
+
+		benchmarks.add(new Benchmark("Vector3.normalize")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += Float.floatToIntBits(vector3s[i & (VectorCount - 1)].normalize().x);
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Mathf.almostEquals")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += Mathf.almostEquals(vector2s[i & (VectorCount - 1)].x, vector2s[(i + 1) & (VectorCount - 1)].x) ? 1 : 0;
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Mathf.toSignedAngle")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += Float.floatToIntBits(Mathf.toSignedAngle(vector2s[i & (VectorCount - 1)].x * 720f));
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Mathf.sigmoid")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += Float.floatToIntBits(Mathf.sigmoid(vector2s[i & (VectorCount - 1)].x));
+				return result;
+			}
+		});
+	}
+
+	private static void addCollectionBenchmarks(List<Benchmark> benchmarks)
+	{
+		final CollectionHelper.PriorityExtractor<Integer> extractor = new CollectionHelper.PriorityExtractor<Integer>()
+		{
+			@Override
+			public int getPriority(Integer item)
+			{
+				return item;
+			}
+		};
+
+		final int Count = 64;
+		final Random random = new Random(42);
+
+		final ArrayList<Integer> sorted = new ArrayList<>();
+		final int[] keys = new int[VectorCount];
+
+		for (int i = 0; i < Count; i++) sorted.add(i * 3);
+		for (int i = 0; i < keys.length; i++) keys[i] = random.nextInt(Count * 3);
+
+		benchmarks.add(new Benchmark("CollectionHelper.binarySearch (64)")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += CollectionHelper.binarySearch(sorted, extractor, keys[i & (VectorCount - 1)]);
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("CollectionHelper.sort (64)")
+		{
+			private final ArrayList<Integer> list = new ArrayList<>();
+
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+
+				for (int i = 0; i < iterations; i++)
+				{
+					list.clear();
+					for (int j = 0; j < Count; j++) list.add(keys[(i + j) & (VectorCount - 1)]);
+
+					CollectionHelper.sort(list, extractor);
+					result += list.get(0);
+				}
+
+				return result;
+			}
+		});
+	}
+
+	private static void addInputBenchmarks(List<Benchmark> benchmarks)
+	{
+		final BenchmarkOpMode opMode = new BenchmarkOpMode();
+		final HeadlessRuntime runtime = new HeadlessRuntime(opMode, null);
+
+		runtime.init();
+		runtime.start();
+		runtime.loop(1, null);
+
+		final Input input = opMode.input;
+
+		benchmarks.add(new Benchmark("Input.updateAll (30 buttons)")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				for (int i = 0; i < iterations; i++)
+				{
+					runtime.gamepad1.a = (i & 1) == 0;
+					input.beforeUpdate();
+				}
+
+				return input.getButton(Input.Source.CONTROLLER_1, Input.Button.A) ? 1 : 0;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Input.getButton")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += input.getButton(Input.Source.CONTROLLER_2, BenchmarkOpMode.buttons[i % BenchmarkOpMode.buttons.length]) ? 1 : 0;
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Input.getButtonDown")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += input.getButtonDown(Input.Source.CONTROLLER_2, BenchmarkOpMode.buttons[i % BenchmarkOpMode.buttons.length]) ? 1 : 0;
+				return result;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Input.getVector")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += Float.floatToIntBits(input.getVector(Input.Source.CONTROLLER_1, Input.Button.LEFT_JOYSTICK).x);
+				return result;
+			}
+		});
+	}
+
+	private static void addJobSequenceBenchmarks(List<Benchmark> benchmarks)
+	{
+		final BenchmarkOpMode opMode = new BenchmarkOpMode();
+		final BenchmarkAutoBehavior behavior = new BenchmarkAutoBehavior(opMode);
+
+		//Jobs only start once and are then done for good, so a sequence cannot be reused and every operation has to build a new one
+		benchmarks.add(new Benchmark("JobSequence build + run (1000 jobs)")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+
+				for (int i = 0; i < iterations; i++)
+				{
+					JobSequence sequence = new BenchmarkSequence(opMode, behavior, 1000);
+
+					sequence.tryQueueJobs();
+					sequence.reset();
+
+					while (!sequence.run())
+					{
+						behavior.update();
+						result++;
+					}
+				}
+
+				return result;
+			}
+		});
+	}
+
+	private static void addDebugBenchmarks(List<Benchmark> benchmarks)
+	{
+		benchmarks.add(new Benchmark("Debug.log (1 arg)")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				for (int i = 0; i < iterations; i++) Debug.log("Benchmark");
+				return iterations;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Debug.log (4 args)")
+		{
+			@Override
+			protected long run(int iterations)
+			{
+				for (int i = 0; i < iterations; i++) Debug.log("Benchmark", "log", "with", "args");
+				return iterations;
+			}
+		});
+
+		benchmarks.add(new Benchmark("Debug.getLogged (30)")
+		{
+			@Override
+			protected void setup()
+			{
+				for (int i = 0; i < Debug.getLogListCapacity(); i++) Debug.log("Benchmark line " + i);
+			}
+
+			@Override
+			protected long run(int iterations)
+			{
+				long result = 0L;
+				for (int i = 0; i < iterations; i++) result += Debug.getLogged(30).length();
+				return result;
+			}
+		});
+	}
+
+	private static class BenchmarkOpMode extends OpModeBase
+	{
+		public static final Input.Button[] buttons = new Input.Button[]{Input.Button.A, Input.Button.B, Input.Button.X, Input.Button.Y, Input.Button.START, Input.Button.BACK, Input.Button.GUIDE, Input.Button.DPAD_RIGHT, Input.Button.DPAD_LEFT, Input.Button.DPAD_UP, Input.Button.DPAD_DOWN, Input.Button.LEFT_BUMPER, Input.Button.RIGHT_BUMPER, Input.Button.LEFT_JOYSTICK_BUTTON, Input.Button.RIGHT_JOYSTICK_BUTTON};
+
+		@Override
+		protected void addBehaviors(List<Behavior> behaviorList)
+		{
+			behaviorList.add(new InputBehavior(this));
+		}
+
+		@Override
+		protected void appendConfigOptions(List<ConfigOption> options)
+		{
+		}
+	}
+
+	private static class InputBehavior extends Behavior
+	{
+		public InputBehavior(OpModeBase opMode)
+		{
+			super(opMode);
+		}
+
+		@Override
+		public void start()
+		{
+			super.start();
+
+			for (Input.Source source : Input.Source.values())
+			{
+				for (Input.Button button : BenchmarkOpMode.buttons) opMode.input.registerButton(source, button);
+			}
+		}
+	}
+
+	private static class BenchmarkAutoBehavior extends AutoBehavior<Job>
+	{
+		public BenchmarkAutoBehavior(OpModeBase opMode)
+		{
+			super(opMode);
+		}
+
+		@Override
+		protected void updateJob()
+		{
+			getCurrentJob().finishJob();
+		}
+	}
+
+	private static class BenchmarkSequence extends JobSequence
+	{
+		public BenchmarkSequence(OpModeBase opMode, BenchmarkAutoBehavior behavior, int count)
+		{
+			super(opMode);
+
+			this.behavior = behavior;
+			this.count = count;
+		}
+
+		private final BenchmarkAutoBehavior behavior;
+		private final int count;
+
+		@Override
+		protected void queueJobs()
+		{
+			for (int i = 0; i < count; i++) execute(behavior, new Job() {});
+		}
+	}
+}
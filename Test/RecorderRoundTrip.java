@@ -0,0 +1,219 @@
+package FTCEngine.Test;
+
+import com.qualcomm.robotcore.hardware.Gamepad;
+import com.qualcomm.robotcore.hardware.HardwareMap;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import FTCEngine.Core.Auto.ConfigOption;
+import FTCEngine.Core.Behavior;
+import FTCEngine.Core.Input;
+import FTCEngine.Core.OpModeBase;
+import FTCEngine.Core.SensorCache;
+import FTCEngine.Delegates.Action;
+import FTCEngine.Simulation.HeadlessRuntime;
+
+/**
+ * Records an opMode with random gamepads, frame times and sensor values, replays the log and checks that every frame
+ * of the replay sees the same phase, time, gamepad state and sensor readings as the recording.
+ * The sensors read different random values during the replay, so a reading that goes to the device instead of the log is caught.
+ * Run the main method, it throws if the replay diverges.
+ */
+public class RecorderRoundTrip
+{
+	private static final int InitFrames = 20;
+	private static final int LoopFrames = 500;
+
+	private static final Input.Button[] buttons = new Input.Button[]{Input.Button.A, Input.Button.B, Input.Button.X, Input.Button.Y, Input.Button.LEFT_BUMPER, Input.Button.DPAD_UP};
+
+	public static void main(String[] args) throws IOException
+	{
+		File file = File.createTempFile("FTCEngine", ".log");
+		file.deleteOnExit();
+
+		final Random random = new Random(42);
+
+		TraceOpMode recorded = new TraceOpMode(1L);
+		HeadlessRuntime recordRuntime = new HeadlessRuntime(recorded, null);
+
+		recorded.recorder.record(file);
+		recordRuntime.run(InitFrames, LoopFrames, new Action<HeadlessRuntime>()
+		{
+			@Override
+			public void accept(HeadlessRuntime runtime)
+			{
+				runtime.setFrameRate(50f + random.nextFloat() * 100f); //Uneven frame times
+
+				randomize(runtime.gamepad1, random);
+				randomize(runtime.gamepad2, random);
+			}
+		});
+
+		TraceOpMode replayed = new TraceOpMode(2L);
+		new HeadlessRuntime(replayed, null).replay(file);
+
+		List<String> expected = recorded.trace;
+		List<String> actual = replayed.trace;
+
+		for (int i = 0; i < Math.min(expected.size(), actual.size()); i++)
+		{
+			if (expected.get(i).equals(actual.get(i))) continue;
+			throw new IllegalStateException("Replay diverged at trace line " + i + "!\nRecorded: " + expected.get(i) + "\nReplayed: " + actual.get(i));
+		}
+
+		if (expected.size() != actual.size()) throw new IllegalStateException("Replay has " + actual.size() + " trace lines but the recording has " + expected.size() + "!");
+		System.out.println("Record and replay match over " + expected.size() + " trace lines (" + recorded.recorder.getFrameCount() + " frames)");
+	}
+
+	private static void randomize(Gamepad gamepad, Random random)
+	{
+		gamepad.a = random.nextInt(4) == 0;
+		gamepad.b = random.nextInt(4) == 0;
+		gamepad.x = random.nextBoolean();
+		gamepad.y = random.nextBoolean();
+		gamepad.left_bumper = random.nextInt(8) == 0;
+		gamepad.dpad_up = random.nextBoolean();
+
+		gamepad.left_stick_x = random.nextFloat() * 2f - 1f;
+		gamepad.left_stick_y = random.nextFloat() * 2f - 1f;
+		gamepad.right_stick_x = random.nextFloat() * 2f - 1f;
+		gamepad.right_stick_y = random.nextFloat() * 2f - 1f;
+		gamepad.left_trigger = random.nextFloat();
+		gamepad.right_trigger = random.nextFloat();
+	}
+
+	private static class TraceOpMode extends OpModeBase
+	{
+		public TraceOpMode(long sensorSeed)
+		{
+			this.sensorSeed = sensorSeed;
+		}
+
+		public final long sensorSeed;
+		public final ArrayList<String> trace = new ArrayList<>();
+
+		@Override
+		protected void addBehaviors(List<Behavior> behaviorList)
+		{
+			behaviorList.add(new TraceBehavior(this));
+		}
+
+		@Override
+		protected void appendConfigOptions(List<ConfigOption> options)
+		{
+		}
+	}
+
+	/**
+	 * Adds a line to the trace of the opMode in every phase, with everything the replay has to reproduce
+	 */
+	private static class TraceBehavior extends Behavior
+	{
+		public TraceBehavior(OpModeBase opMode)
+		{
+			super(opMode);
+			trace = ((TraceOpMode)opMode).trace;
+			sensorSeed = ((TraceOpMode)opMode).sensorSeed;
+		}
+
+		private final List<String> trace;
+		private final long sensorSeed;
+
+		private SensorCache.Reading everyFrame;
+		private SensorCache.Reading sometimes;
+
+		@Override
+		public void awake(HardwareMap hardwareMap)
+		{
+			super.awake(hardwareMap);
+			final Random device = new Random(sensorSeed);
+
+			SensorCache.Reader reader = new SensorCache.Reader()
+			{
+				@Override
+				public double read()
+				{
+					return device.nextDouble();
+				}
+			};
+
+			everyFrame = opMode.sensorCache.register(reader);
+			sometimes = opMode.sensorCache.register(reader);
+
+			for (Input.Source source : Input.Source.values())
+			{
+				for (Input.Button button : buttons) opMode.input.registerButton(source, button);
+			}
+
+			//Listeners run before the behaviors, they have to see the readings of the current frame as well
+			opMode.input.subscribeDown(Input.Source.CONTROLLER_1, Input.Button.A, new Input.ButtonListener()
+			{
+				@Override
+				public void onButton(Input.Source source, Input.Button button)
+				{
+					trace.add("listener " + opMode.time.getTimeNanos() + " " + sometimes.get());
+				}
+			});
+
+			trace.add("awake " + everyFrame.get());
+		}
+
+		@Override
+		public void awakeUpdate()
+		{
+			super.awakeUpdate();
+			trace("init_loop");
+		}
+
+		@Override
+		public void start()
+		{
+			super.start();
+			trace.add("start " + opMode.time.getTimeNanos() + " " + everyFrame.get());
+		}
+
+		@Override
+		public void update()
+		{
+			super.update();
+			trace("loop");
+		}
+
+		@Override
+		public void stop()
+		{
+			super.stop();
+			trace.add("stop " + opMode.time.getTimeNanos() + " " + everyFrame.get());
+		}
+
+		private void trace(String phase)
+		{
+			StringBuilder builder = new StringBuilder(phase);
+
+			builder.append(' ').append(opMode.time.getTimeNanos());
+			builder.append(' ').append(everyFrame.get());
+
+			//Only read on some frames, so the cache has frames to skip
+			if (opMode.time.getFrameCount() % 3 == 0) builder.append(' ').append(sometimes.get());
+
+			for (Input.Source source : Input.Source.values())
+			{
+				builder.append(" |");
+				for (Input.Button button : buttons) builder.append(opMode.input.getButton(source, button) ? '1' : '0');
+
+				builder.append(' ').append(opMode.input.getX(source, Input.Button.LEFT_JOYSTICK));
+				builder.append(' ').append(opMode.input.getY(source, Input.Button.LEFT_JOYSTICK));
+				builder.append(' ').append(opMode.input.getX(source, Input.Button.RIGHT_JOYSTICK));
+				builder.append(' ').append(opMode.input.getY(source, Input.Button.RIGHT_JOYSTICK));
+				builder.append(' ').append(opMode.input.getTrigger(source, Input.Button.LEFT_TRIGGER));
+				builder.append(' ').append(opMode.input.getTrigger(source, Input.Button.RIGHT_TRIGGER));
+			}
+
+			trace.add(builder.toString());
+		}
+	}
+}